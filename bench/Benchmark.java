@@ -0,0 +1,12 @@
+/**
+ * A single operation to be timed by the BenchmarkRunner
+ * Operations return a value derived from their work, which the runner consumes so the JIT cannot remove the work
+ */
+@FunctionalInterface
+public interface Benchmark {
+    /**
+     * Perform the operation once
+     * @return a value derived from the work done
+     */
+    Object run();
+}
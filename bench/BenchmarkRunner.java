@@ -0,0 +1,362 @@
+import java.io.IOException;
+import java.io.PrintStream;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Runs the client's microbenchmarks and compares them against committed baseline results
+ * Each benchmark is warmed up, then timed over several fixed length iterations, reporting the average time per operation
+ *
+ * Usage: java BenchmarkRunner [--filter text] [--warmup n] [--iterations n] [--time ms] [--out file]
+ *                             [--baseline file] [--tolerance percent]
+ */
+public class BenchmarkRunner {
+    // Operations run between checks of the clock, so reading the clock does not dominate short operations
+    private static final int BATCH = 256;
+
+    // Benchmarks in the order they run, by name
+    private Map<String, Benchmark> benchmarks = new LinkedHashMap<>();
+
+    // Iterations and their length
+    private int warmupIterations = 3;
+    private int measuredIterations = 5;
+    private long iterationMillis = 1000;
+
+    // Object no operation can return, checked against every result so the JIT has to compute it
+    private static volatile Object unreachable = new Object();
+
+    /**
+     * Register a benchmark to run
+     * @param name name of the benchmark, e.g parse.privmsg
+     * @param benchmark the operation to time
+     */
+    public void register(String name, Benchmark benchmark) {
+        benchmarks.put(name, benchmark);
+    }
+
+    /**
+     * Setter for the number of iterations
+     * @param warmupIterations iterations run before timing starts
+     * @param measuredIterations iterations timed
+     * @param iterationMillis length of each iteration in milliseconds
+     */
+    public void setIterations(int warmupIterations, int measuredIterations, long iterationMillis) {
+        this.warmupIterations = Math.max(0, warmupIterations);
+        this.measuredIterations = Math.max(1, measuredIterations);
+        this.iterationMillis = Math.max(1, iterationMillis);
+    }
+
+    /**
+     * Run every registered benchmark whose name contains the filter
+     * @param filter text the names must contain, or an empty string to run them all
+     * @param out where to print progress and results
+     * @return the results, in the order they ran
+     */
+    public List<Result> run(String filter, PrintStream out) {
+        List<Result> results = new ArrayList<>();
+
+        for (Map.Entry<String, Benchmark> entry : benchmarks.entrySet()) {
+            if (!entry.getKey().contains(filter)) {
+                continue;
+            }
+
+            Result result = measure(entry.getKey(), entry.getValue());
+            results.add(result);
+            out.println(result);
+        }
+
+        return results;
+    }
+
+    /**
+     * Warm up and time a single benchmark
+     * @param name name of the benchmark
+     * @param benchmark the operation to time
+     * @return average time per operation over the measured iterations
+     */
+    private Result measure(String name, Benchmark benchmark) {
+        // Let the JIT compile the operation before it is timed
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(benchmark);
+        }
+
+        double[] scores = new double[measuredIterations];
+        for (int i = 0; i < measuredIterations; i++) {
+            scores[i] = iteration(benchmark);
+        }
+
+        return new Result(name, scores);
+    }
+
+    /**
+     * Run an operation repeatedly for one iteration
+     * @param benchmark the operation to run
+     * @return average nanoseconds per operation
+     */
+    private double iteration(Benchmark benchmark) {
+        long operations = 0;
+        long start = System.nanoTime();
+        long deadline = start + iterationMillis * 1_000_000L;
+        long now;
+
+        do {
+            for (int i = 0; i < BATCH; i++) {
+                consume(benchmark.run());
+            }
+            operations += BATCH;
+            now = System.nanoTime();
+        } while (now < deadline);
+
+        return (double) (now - start) / operations;
+    }
+
+    /**
+     * Consume the result of an operation so its work cannot be optimised away
+     * @param result the result of the operation
+     */
+    private static void consume(Object result) {
+        if (result == unreachable) {
+            throw new IllegalStateException("Benchmark returned the unreachable object");
+        }
+    }
+
+    /**
+     * Read results written by an earlier run, e.g the committed baseline
+     * @param path file the results were written to
+     * @return average nanoseconds per operation, by benchmark name
+     * @throws IOException if the file cannot be read
+     */
+    public static Map<String, Double> readResults(Path path) throws IOException {
+        Map<String, Double> scores = new LinkedHashMap<>();
+
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            // Skip comments, blank lines and the header
+            String[] columns = line.trim().split("\\s+");
+            if (line.startsWith("#") || columns.length < 4 || !columns[1].equals("avgt")) {
+                continue;
+            }
+
+            scores.put(columns[0], Double.parseDouble(columns[3]));
+        }
+
+        return scores;
+    }
+
+    /**
+     * Compare results against a baseline and print any benchmark that got slower than the tolerance allows
+     * @param results results of this run
+     * @param baseline average nanoseconds per operation of the baseline, by benchmark name
+     * @param tolerance fraction a benchmark may slow down by before it counts as a regression, e.g 0.1
+     * @param out where to print the comparison
+     * @return number of regressions
+     */
+    public static int compare(List<Result> results, Map<String, Double> baseline, double tolerance, PrintStream out) {
+        int regressions = 0;
+
+        out.println();
+        out.println(String.format(Locale.ROOT, "%-36s %12s %12s %8s", "Benchmark", "Baseline", "Now", "Change"));
+
+        for (Result result : results) {
+            Double before = baseline.get(result.getName());
+
+            // New benchmarks have nothing to compare against yet
+            if (before == null) {
+                out.println(String.format(Locale.ROOT, "%-36s %12s %12.3f %8s", result.getName(), "-", result.getScore(), "new"));
+                continue;
+            }
+
+            double change = result.getScore() / before - 1;
+            boolean regressed = change > tolerance;
+            if (regressed) {
+                regressions++;
+            }
+
+            out.println(String.format(Locale.ROOT, "%-36s %12.3f %12.3f %+7.1f%%%s",
+                result.getName(), before, result.getScore(), change * 100, regressed ? "  REGRESSION" : ""));
+        }
+
+        return regressions;
+    }
+
+    /**
+     * Register every benchmark of the client
+     * @param runner the runner to register them with
+     */
+    private static void registerAll(BenchmarkRunner runner) {
+        ParseBenchmarks.register(runner);
+        MessageBenchmarks.register(runner);
+        TargetBenchmarks.register(runner);
+        ChannelBenchmarks.register(runner);
+        SearchBenchmarks.register(runner);
+    }
+
+    /**
+     * Run the benchmarks from the command line
+     * Exits with status 1 if a baseline was given and any benchmark regressed past the tolerance
+     * @param args options, see the class documentation
+     * @throws IOException if the baseline cannot be read or the results cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        String filter = "";
+        int warmup = 3;
+        int iterations = 5;
+        long time = 1000;
+        Path out = null;
+        Path baseline = null;
+        double tolerance = 0.10;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+
+            switch (args[i]) {
+                case "--filter":
+                    filter = value;
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(value);
+                    break;
+                case "--iterations":
+                    iterations = Integer.parseInt(value);
+                    break;
+                case "--time":
+                    time = Long.parseLong(value);
+                    break;
+                case "--out":
+                    out = Paths.get(value);
+                    break;
+                case "--baseline":
+                    baseline = Paths.get(value);
+                    break;
+                case "--tolerance":
+                    tolerance = Double.parseDouble(value) / 100;
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        // Keep the benchmarks' messages out of the user's stored history, starting from empty stores each run
+        if (System.getProperty("chatclient.storeDir") == null) {
+            Path storeDir = Files.createTempDirectory("chatclient-bench");
+            System.setProperty("chatclient.storeDir", storeDir.toString());
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> deleteAll(storeDir)));
+        }
+        // The shared search index would grow with every message the benchmarks add, so search has its own benchmarks
+        if (System.getProperty("chatclient.search") == null) {
+            System.setProperty("chatclient.search", "false");
+        }
+
+        BenchmarkRunner runner = new BenchmarkRunner();
+        runner.setIterations(warmup, iterations, time);
+        registerAll(runner);
+
+        System.out.println(Result.HEADER);
+        List<Result> results = runner.run(filter, System.out);
+
+        // Write results in the same format the baseline is read back in
+        if (out != null) {
+            List<String> lines = new ArrayList<>();
+            lines.add("# " + System.getProperty("java.vm.name") + " " + System.getProperty("java.version")
+                + ", " + Runtime.getRuntime().availableProcessors() + " cpus, "
+                + warmup + " warmup and " + iterations + " measured iterations of " + time + "ms");
+            lines.add(Result.HEADER);
+            for (Result result : results) {
+                lines.add(result.toString());
+            }
+            Files.write(out, lines, StandardCharsets.UTF_8);
+        }
+
+        if (baseline != null && compare(results, readResults(baseline), tolerance, System.out) > 0) {
+            System.exit(1);
+        }
+
+        // Benchmarks may leave client threads running (e.g the listener dispatcher)
+        System.exit(0);
+    }
+
+    /**
+     * Delete a directory and everything in it
+     * @param directory the directory
+     */
+    private static void deleteAll(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            // Deepest first, so each directory is empty by the time it is deleted
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Average time per operation of one benchmark over its measured iterations
+     */
+    public static class Result {
+        // Column headings matching toString
+        public static final String HEADER = String.format(Locale.ROOT, "%-36s %4s %4s %12s %10s %6s",
+            "Benchmark", "Mode", "Cnt", "Score", "Error", "Units");
+
+        private String name;
+        private double score;
+        private double error;
+        private int count;
+
+        /**
+         * Constructor for a result
+         * @param name name of the benchmark
+         * @param scores nanoseconds per operation of each measured iteration
+         */
+        public Result(String name, double[] scores) {
+            this.name = name;
+            this.count = scores.length;
+
+            double sum = 0;
+            for (double score : scores) {
+                sum += score;
+            }
+            score = sum / count;
+
+            // Error is the standard deviation between iterations
+            double squares = 0;
+            for (double score : scores) {
+                squares += (score - this.score) * (score - this.score);
+            }
+            error = count > 1 ? Math.sqrt(squares / (count - 1)) : 0;
+        }
+
+        /**
+         * Getter for the benchmark's name
+         * @return name of the benchmark
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Getter for the average time per operation
+         * @return nanoseconds per operation
+         */
+        public double getScore() {
+            return score;
+        }
+
+        /**
+         * Format the result as a row of the results table
+         * @return the result, in the columns of HEADER
+         */
+        public String toString() {
+            return String.format(Locale.ROOT, "%-36s %4s %4d %12.3f +- %7.3f %6s", name, "avgt", count, score, error, "ns/op");
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Benchmarks for updating and reading a channel's users
+ */
+public class ChannelBenchmarks {
+    // Users in the channel
+    private static final int USERS = 200;
+
+    /**
+     * Register the benchmarks
+     * @param runner the runner to register them with
+     */
+    public static void register(BenchmarkRunner runner) {
+        ServerModel model = new ServerModel("bench", 0, "bench");
+        String[] users = new String[USERS];
+        for (int i = 0; i < USERS; i++) {
+            users[i] = "user" + i;
+        }
+
+        // Replacing every user, as a REPLY_NAMES does
+        Channel overwritten = new Channel(model, "#overwrite", users);
+        runner.register("channel.overwriteUsers", () -> {
+            overwritten.overwriteUsers(users);
+            return overwritten.getUsers();
+        });
+
+        // A user joining then parting, as channel churn does
+        Channel churning = new Channel(model, "#churn", users);
+        runner.register("channel.joinPart", () -> {
+            churning.addUser("newcomer");
+            churning.removeUser("newcomer");
+            return churning;
+        });
+
+        // A user from the middle of the channel parting then joining again
+        int[] next = new int[1];
+        runner.register("channel.partJoin", () -> {
+            String user = users[next[0]];
+            next[0] = (next[0] + 1) % USERS;
+
+            churning.removeUser(user);
+            churning.addUser(user);
+            return churning;
+        });
+
+        // Checking whether a user is in the channel
+        runner.register("channel.contains", () -> churning.hasUser("user100"));
+
+        // A user joining then parting a very large channel
+        String[] crowd = new String[20000];
+        for (int i = 0; i < crowd.length; i++) {
+            crowd[i] = "user" + i;
+        }
+        Channel large = new Channel(model, "#large", crowd);
+        runner.register("channel.joinPart.20k", () -> {
+            large.addUser("newcomer");
+            large.removeUser("newcomer");
+            return large;
+        });
+
+        // A view catching up on one user joining, as the user list does for each JOIN
+        long[] shown = new long[1];
+        runner.register("channel.changesSince", () -> {
+            churning.addUser("newcomer");
+            RosterDiff changes = churning.getRoster().changesSince(shown[0]);
+            churning.removeUser("newcomer");
+            shown[0] = churning.getRoster().getVersion();
+            return changes;
+        });
+    }
+}
@@ -0,0 +1,30 @@
+import java.time.LocalDateTime;
+
+/**
+ * Benchmarks for creating and displaying Messages
+ */
+public class MessageBenchmarks {
+    private static final String CONTENT = "hello everyone, how is the benchmark going today?";
+    private static final String SERVER_TIME = "2024-12-02T20:43:29.123456";
+
+    /**
+     * Register the benchmarks
+     * @param runner the runner to register them with
+     */
+    public static void register(BenchmarkRunner runner) {
+        // Construction with a server time already known, as the model does for each PRIVMSG
+        LocalDateTime serverTime = LocalDateTime.parse(SERVER_TIME);
+        runner.register("message.construct", () -> new Message("alice", "#bench", CONTENT, serverTime, "bench:0"));
+
+        // Construction from the server time as text
+        runner.register("message.construct.parse", () -> new Message("alice", "#bench", CONTENT, SERVER_TIME, "bench:0"));
+
+        // Formatting for display the first time, including construction as a message is only formatted once
+        // The timestamp is formatted once a second at most, so this is mostly construction and concatenation
+        runner.register("message.format", () -> new Message("alice", "#bench", CONTENT, serverTime, "bench:0").toString());
+
+        // Showing a message again, as the message panel does for every message when it shows a target again
+        Message message = new Message("alice", "#bench", CONTENT, serverTime, "bench:0");
+        runner.register("message.format.again", message::toString);
+    }
+}
@@ -0,0 +1,93 @@
+import java.time.LocalDateTime;
+
+import java.util.Random;
+
+/**
+ * Measures the heap retained per Message, by holding many messages and comparing the heap used before and after
+ * Each message is given its own copies of its strings, as the parser gives each message it reads from the server
+ * The messages are then timed through every stage from the socket to the screen and formatted for display, as
+ * messages received from the server and shown are, and measured again
+ */
+public class MessageFootprint {
+    // Messages held by default, enough that the heap used by everything else doesn't matter
+    private static final int DEFAULT_MESSAGES = 500_000;
+    // Distinct senders and targets, about a busy server's worth
+    private static final int SENDERS = 200;
+    private static final int TARGETS = 20;
+
+    /**
+     * Run the measurement
+     * @param args optionally, the number of messages to hold
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MESSAGES;
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.of(2024, 12, 2, 20, 0);
+        Message[] messages = new Message[count];
+
+        long before = usedHeap();
+        for (int i = 0; i < count; i++) {
+            // new String, so names aren't shared unless the message shares them
+            String sender = new String("user" + random.nextInt(SENDERS));
+            String target = new String("#channel" + random.nextInt(TARGETS));
+            String server = new String("bench | irc.example.org:6667");
+            messages[i] = new Message(sender, target, content(random), start.plusNanos(i * 1_234_567L), server);
+        }
+        long after = usedHeap();
+
+        // Received from the socket, through each stage to being painted, with the text shown cached
+        PipelineLatency latency = new PipelineLatency();
+        for (Message message : messages) {
+            long nanos = System.nanoTime();
+            latency.record(message, MessageStage.RECEIVED, nanos);
+            for (MessageStage stage : MessageStage.values()) {
+                latency.record(message, stage, ++nanos);
+            }
+            message.toString();
+        }
+        long shown = usedHeap();
+
+        // Heap used by the array of references itself isn't part of each message
+        long arrayBytes = 16L + 4L * count;
+        System.out.printf("%d messages, %.1f bytes/message as created, %.1f bytes/message once received and shown%n",
+            count, (double) (after - before - arrayBytes) / count, (double) (shown - before - arrayBytes) / count);
+
+        // Keep the messages reachable until measured
+        if (messages[count - 1].getSender().isEmpty()) {
+            System.out.println();
+        }
+    }
+
+    /**
+     * Make up message content of a typical length for chat, mostly ASCII
+     * @param random source of characters
+     * @return the content
+     */
+    private static String content(Random random) {
+        int length = 20 + random.nextInt(60);
+        StringBuilder content = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            content.append(random.nextInt(6) == 0 ? ' ' : (char) ('a' + random.nextInt(26)));
+        }
+        return content.toString();
+    }
+
+    /**
+     * Get the heap in use once garbage has been collected
+     * @return bytes used
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // Collect until the heap stops shrinking, as one request may not collect everything
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long now = runtime.totalMemory() - runtime.freeMemory();
+            if (now >= used) {
+                break;
+            }
+            used = now;
+        }
+        return used;
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Benchmarks for handling lines from the server: tokenizing, looking up the handler and running it
+ */
+public class ParseBenchmarks {
+    // Lines as the connection engine hands them to the model
+    private static final char[] PRIVMSG = ":alice PRIVMSG #bench :hello everyone, how is the benchmark going today?".toCharArray();
+    private static final char[] NAMES = namesLine("#bench", 50).toCharArray();
+
+    // Messages delivered to a target before its history is cleared, so the benchmark does not run out of memory
+    private static final int HISTORY_LIMIT = 4096;
+
+    /**
+     * Register the benchmarks
+     * @param runner the runner to register them with
+     */
+    public static void register(BenchmarkRunner runner) {
+        // Tokenizing alone
+        LineTokenizer tokenizer = new LineTokenizer();
+        runner.register("parse.tokenize", () -> {
+            tokenizer.tokenize(PRIVMSG, PRIVMSG.length);
+            return tokenizer;
+        });
+
+        // Tokenizing, handler lookup and pulling out the fields a PRIVMSG handler needs, without touching the model
+        ServerModel parseOnly = new ServerModel("bench", 0, "bench");
+        String[] fields = new String[3];
+        parseOnly.registerHandler("PRIVMSG", message -> {
+            fields[0] = message.prefix();
+            fields[1] = message.target();
+            fields[2] = message.trailing();
+        });
+        runner.register("parse.privmsg", () -> {
+            parseOnly.onLine(PRIVMSG, PRIVMSG.length);
+            return fields[2];
+        });
+
+        // The whole of the default PRIVMSG handler: a new Message added to the channel's history and sent to listeners
+        ServerModel delivering = new ServerModel("bench", 0, "bench");
+        Channel channel = new Channel(delivering, "#bench", new String[0]);
+        delivering.addTarget(channel);
+        int[] delivered = new int[1];
+        runner.register("parse.privmsg.deliver", () -> {
+            delivering.onLine(PRIVMSG, PRIVMSG.length);
+
+            if (++delivered[0] == HISTORY_LIMIT) {
+                delivered[0] = 0;
+                channel.clearMessages();
+            }
+            return channel;
+        });
+
+        // A REPLY_NAMES for a joined channel of 50 users, replacing the channel's users
+        // Its own nickname, as the channel's history is already open for the delivering session
+        ServerModel naming = new ServerModel("bench", 0, "namer");
+        Channel named = new Channel(naming, "#bench", new String[0]);
+        naming.addTarget(named);
+        runner.register("parse.names", () -> {
+            naming.onLine(NAMES, NAMES.length);
+            return named.getUsers();
+        });
+    }
+
+    /**
+     * Build a REPLY_NAMES line as the server sends it
+     * @param channel name of the channel
+     * @param users number of users in the channel
+     * @return the line
+     */
+    private static String namesLine(String channel, int users) {
+        StringBuilder line = new StringBuilder("REPLY_NAMES ").append(channel).append(" :");
+        for (int i = 0; i < users; i++) {
+            line.append("user").append(i).append(' ');
+        }
+        return line.append("END").toString();
+    }
+}
@@ -0,0 +1,126 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import java.time.LocalDateTime;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmarks for indexing messages and searching an index of a million messages
+ */
+public class SearchBenchmarks {
+    // Messages in the searched index, spread over a few channels
+    private static final int MESSAGES = 1_000_000;
+    private static final int CHANNELS = 4;
+    // Messages indexed before the indexing benchmark starts a new index, so it does not run out of memory
+    private static final int INDEX_LIMIT = 100_000;
+    // Words to build messages from, the first few far more common than the rest
+    private static final int VOCABULARY = 20_000;
+    private static final int WORDS_PER_MESSAGE = 8;
+
+    /**
+     * Register the benchmarks
+     * @param runner the runner to register them with
+     */
+    public static void register(BenchmarkRunner runner) {
+        ServerModel model = new ServerModel("bench", 0, "bench");
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.of(2024, 12, 2, 20, 0);
+
+        // Indexing a message as it is added to a target
+        Target indexed = new Target(model, "#index");
+        Message[] sample = new Message[1024];
+        for (int i = 0; i < sample.length; i++) {
+            sample[i] = new Message("user" + random.nextInt(50), "#index", sentence(random), start.plusSeconds(i), "bench:0");
+        }
+        SearchIndex[] growing = { new SearchIndex() };
+        growing[0].open(indexed, "#index", 0);
+        int[] added = new int[1];
+        runner.register("search.add", () -> {
+            if (added[0] == INDEX_LIMIT) {
+                added[0] = 0;
+                growing[0] = new SearchIndex();
+                growing[0].open(indexed, "#index", 0);
+            }
+
+            // Positions only need to increase, as the index skips any it has already seen
+            growing[0].add(indexed, sample[added[0] & (sample.length - 1)], added[0]++);
+            return growing[0];
+        });
+
+        // Searching a million messages, built on first use so other benchmarks can be run without it
+        Target[] channels = new Target[CHANNELS];
+        for (int i = 0; i < CHANNELS; i++) {
+            channels[i] = new Target(model, "#search" + i);
+        }
+        SearchIndex[] searched = new SearchIndex[1];
+        LocalDateTime lastWeek = start.plusSeconds(MESSAGES).minusDays(7);
+
+        // A word in about one message in a thousand
+        runner.register("search.rare", () -> {
+            return index(searched, model, channels, start).search("w900", null, null, null, 50);
+        });
+
+        // Two words in about one message in ten each
+        runner.register("search.common", () -> {
+            return index(searched, model, channels, start).search("w1 w2", null, null, null, 50);
+        });
+
+        // A common word in one channel over the past week
+        runner.register("search.targetWeek", () -> {
+            return index(searched, model, channels, start).search("w3", channels[1], lastWeek, null, 50);
+        });
+    }
+
+    /**
+     * Get the searched index, building and storing its messages the first time
+     * @param searched holder for the index
+     * @param model the server the channels are on
+     * @param channels channels to spread the messages over
+     * @param start time of the first message
+     * @return the index
+     */
+    private static SearchIndex index(SearchIndex[] searched, ServerModel model, Target[] channels, LocalDateTime start) {
+        if (searched[0] != null) {
+            return searched[0];
+        }
+
+        Random random = new Random(7);
+        SearchIndex index = new SearchIndex();
+        try {
+            // Messages are stored in the channels' own stores, so hits can be read back in
+            MessageStore[] stores = new MessageStore[CHANNELS];
+            for (int i = 0; i < CHANNELS; i++) {
+                stores[i] = MessageStore.open(model, "bench:0", "bench", channels[i].getName());
+                index.open(channels[i], stores[i].getDirectory().toString(), 0);
+            }
+
+            for (int i = 0; i < MESSAGES; i++) {
+                int channel = random.nextInt(CHANNELS);
+                Message message = new Message("user" + random.nextInt(50), channels[channel].getName(), sentence(random),
+                    start.plusSeconds(i), "bench:0");
+                index.add(channels[channel], message, stores[channel].append(message));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        searched[0] = index;
+        return index;
+    }
+
+    /**
+     * Make up a message from words of the vocabulary, skewed towards the first words like natural text
+     * @param random source of words
+     * @return the message
+     */
+    private static String sentence(Random random) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < WORDS_PER_MESSAGE; i++) {
+            double skew = random.nextDouble();
+            sentence.append(i == 0 ? "" : " ").append('w').append((int) (skew * skew * skew * VOCABULARY));
+        }
+        return sentence.toString();
+    }
+}
@@ -0,0 +1,86 @@
+import java.time.LocalDateTime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmarks for a target's message history
+ */
+public class TargetBenchmarks {
+    // Messages in each history
+    private static final int HISTORY = 1000;
+
+    /**
+     * Register the benchmarks
+     * @param runner the runner to register them with
+     */
+    public static void register(BenchmarkRunner runner) {
+        ServerModel model = new ServerModel("bench", 0, "bench");
+        List<Message> history = history(HISTORY);
+
+        // Reading a history that is already in order, as the message panel does each time a target is opened
+        Target sorted = new Target(model, "#sorted");
+        for (Message message : history) {
+            sorted.addMessage(message);
+        }
+        runner.register("target.getMessages", sorted::getMessages);
+
+        // Time of the newest message, used to order targets
+        runner.register("target.lastMessageTime", sorted::getServerTimeOfLastMessage);
+
+        // Adding a message a few places older than the newest, as happens when server times are estimated
+        Target target = new Target(model, "#unsorted");
+        List<Message> late = new ArrayList<>();
+        for (Message message : history) {
+            target.addMessage(message);
+            late.add(new Message(message.getSender(), "#bench", message.getMessage(), message.getServerTime().minusSeconds(8), "bench:0"));
+        }
+        int[] nextLate = new int[1];
+        runner.register("target.addOutOfOrder", () -> {
+            // Start again once every late message has been added, so every operation works on a history of similar size
+            if (nextLate[0] == HISTORY) {
+                nextLate[0] = 0;
+                target.clearMessages();
+                for (Message message : history) {
+                    target.addMessage(message);
+                }
+            }
+
+            target.addMessage(late.get(nextLate[0]++));
+            return target;
+        });
+
+        // Adding a message then reading the history, as happens for each message while its target is open
+        Target growing = new Target(model, "#growing");
+        int[] next = new int[1];
+        runner.register("target.addThenGet", () -> {
+            // Start again once the history is full, so every operation works on a history of similar size
+            if (next[0] == HISTORY) {
+                next[0] = 0;
+                growing.clearMessages();
+            }
+
+            growing.addMessage(history.get(next[0]++));
+            return growing.getMessages();
+        });
+    }
+
+    /**
+     * Build a history of messages a second apart, oldest first
+     * @param size number of messages
+     * @return the messages
+     */
+    static List<Message> history(int size) {
+        LocalDateTime start = LocalDateTime.of(2024, 12, 2, 20, 0);
+        Random random = new Random(42);
+        List<Message> history = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            String sender = "user" + random.nextInt(50);
+            history.add(new Message(sender, "#bench", "message number " + i, start.plusSeconds(i), "bench:0"));
+        }
+
+        return history;
+    }
+}
@@ -0,0 +1,270 @@
+import java.io.IOException;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+import java.time.Duration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connects to a host by racing non-blocking connects to all of its addresses (Happy Eyeballs style)
+ * Attempts start a short delay apart, or straight away when the previous one fails,
+ * and the first socket to connect wins while the rest are closed
+ */
+public class AddressRace {
+    // Delay before starting the next attempt while earlier ones are still in progress
+    private static final long ATTEMPT_DELAY_MILLIS = 250;
+
+    /**
+     * Resolve a host and race connections to its addresses
+     * @param loop the loop to perform the connects on (and that will then own the connection)
+     * @param host the host to connect to
+     * @param port the port to connect to
+     * @param timeout how long to wait for any attempt to succeed
+     * @return a future that completes with the first connected socket
+     */
+    public static CompletableFuture<SocketChannel> connect(EventLoop loop, String host, int port, Duration timeout) {
+        // Resolving blocks, so do it in the background rather than on the loop or the caller's thread
+        return CompletableFuture
+            .supplyAsync(() -> resolve(host), ClientExecutors.background())
+            .thenCompose(addresses -> {
+                AddressRace race = new AddressRace(loop, addresses, port, timeout);
+                loop.execute(race::start);
+                return race.result;
+            });
+    }
+
+    /**
+     * Resolve a host to all of its addresses, alternating between IPv6 and IPv4
+     * @param host the host to resolve
+     * @return the host's addresses in the order to try them
+     */
+    private static InetAddress[] resolve(String host) {
+        InetAddress[] resolved;
+        try {
+            resolved = InetAddress.getAllByName(host);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+
+        // Split by family, keeping the resolver's order within each
+        List<InetAddress> preferred = new ArrayList<>();
+        List<InetAddress> other = new ArrayList<>();
+        boolean firstIsIPv6 = resolved[0] instanceof Inet6Address;
+        for (InetAddress address : resolved) {
+            if ((address instanceof Inet6Address) == firstIsIPv6) {
+                preferred.add(address);
+            } else {
+                other.add(address);
+            }
+        }
+
+        // Interleave the families, so a broken family only delays the first attempt
+        InetAddress[] ordered = new InetAddress[resolved.length];
+        int i = 0;
+        for (int j = 0; j < Math.max(preferred.size(), other.size()); j++) {
+            if (j < preferred.size()) {
+                ordered[i++] = preferred.get(j);
+            }
+            if (j < other.size()) {
+                ordered[i++] = other.get(j);
+            }
+        }
+        return ordered;
+    }
+
+    // Loop performing the connects
+    private EventLoop loop;
+    // Addresses to try, in order
+    private InetAddress[] addresses;
+    private int port;
+    private Duration timeout;
+
+    // Completes with the winning socket
+    private CompletableFuture<SocketChannel> result = new CompletableFuture<>();
+
+    // Attempts still in progress (only used on the loop's thread)
+    private List<SocketChannel> attempts = new ArrayList<>();
+    // Index of the next address to try
+    private int nextAddress;
+    // Number of attempts that failed, and why the last one did
+    private int failedCount;
+    private IOException lastFailure;
+
+    // Timers for starting the next attempt and giving up
+    private ScheduledFuture<?> nextAttemptTimer;
+    private ScheduledFuture<?> timeoutTimer;
+
+    /**
+     * Constructor for a race
+     * @param loop the loop to perform the connects on
+     * @param addresses the addresses to try, in order
+     * @param port the port to connect to
+     * @param timeout how long to wait for any attempt to succeed
+     */
+    private AddressRace(EventLoop loop, InetAddress[] addresses, int port, Duration timeout) {
+        this.loop = loop;
+        this.addresses = addresses;
+        this.port = port;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Start the race, on the loop's thread
+     */
+    private void start() {
+        timeoutTimer = ClientExecutors.scheduler().schedule(() -> loop.execute(this::onTimeout), timeout.toNanos(), TimeUnit.NANOSECONDS);
+        startNextAttempt();
+    }
+
+    /**
+     * Start connecting to the next address, and schedule the one after it
+     */
+    private void startNextAttempt() {
+        if (result.isDone() || nextAddress >= addresses.length) {
+            return;
+        }
+
+        InetAddress address = addresses[nextAddress++];
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            attempts.add(channel);
+
+            // Connect finishes immediately for some local addresses, otherwise wait for the loop to report it
+            if (channel.connect(new InetSocketAddress(address, port))) {
+                onConnected(channel, null);
+                return;
+            }
+            loop.registerConnect(channel, this);
+
+        } catch (IOException e) {
+            onAttemptFailed(channel, e);
+            return;
+        }
+
+        // Give this attempt a head start before trying the next address alongside it
+        if (nextAddress < addresses.length) {
+            nextAttemptTimer = ClientExecutors.scheduler().schedule(() -> loop.execute(this::startNextAttempt), ATTEMPT_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Called by the loop when an attempt has finished connecting or failed
+     * @param key the attempt's selection key
+     */
+    void onConnectable(SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        try {
+            if (channel.finishConnect()) {
+                onConnected(channel, key);
+            }
+        } catch (IOException e) {
+            onAttemptFailed(channel, e);
+        }
+    }
+
+    /**
+     * Hand the winning socket over and close every other attempt
+     * @param winner the socket that connected
+     * @param key the winner's selection key, or null if it never needed one
+     */
+    private void onConnected(SocketChannel winner, SelectionKey key) {
+        attempts.remove(winner);
+
+        // Race already over (e.g timed out), so this socket isn't wanted
+        if (result.isDone()) {
+            closeQuietly(winner);
+            return;
+        }
+
+        // Stop watching for the connect, the connection registers for reads on the same loop
+        if (key != null) {
+            key.interestOps(0);
+        }
+
+        finish();
+        result.complete(winner);
+    }
+
+    /**
+     * Record a failed attempt, moving straight on to the next address
+     * @param channel the attempt's socket, or null if it could not be opened
+     * @param e why the attempt failed
+     */
+    private void onAttemptFailed(SocketChannel channel, IOException e) {
+        if (channel != null) {
+            attempts.remove(channel);
+            closeQuietly(channel);
+        }
+
+        failedCount++;
+        lastFailure = e;
+
+        // Every address has failed
+        if (failedCount == addresses.length) {
+            finish();
+            result.completeExceptionally(lastFailure);
+            return;
+        }
+
+        // Don't wait out the delay for an attempt that has already failed
+        if (nextAttemptTimer != null) {
+            nextAttemptTimer.cancel(false);
+        }
+        startNextAttempt();
+    }
+
+    /**
+     * Give up on the race once the timeout passes
+     */
+    private void onTimeout() {
+        if (result.isDone()) {
+            return;
+        }
+
+        finish();
+        result.completeExceptionally(new SocketTimeoutException("Could not connect within " + timeout.toSeconds() + " seconds"));
+    }
+
+    /**
+     * Cancel timers and close every attempt still in progress
+     */
+    private void finish() {
+        if (nextAttemptTimer != null) {
+            nextAttemptTimer.cancel(false);
+        }
+        if (timeoutTimer != null) {
+            timeoutTimer.cancel(false);
+        }
+
+        for (SocketChannel attempt : attempts) {
+            closeQuietly(attempt);
+        }
+        attempts.clear();
+    }
+
+    /**
+     * Close a socket, ignoring errors as it is being abandoned anyway
+     * @param channel the socket to close
+     */
+    private void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Nothing more can be done with a socket that fails to close
+        }
+    }
+}
@@ -0,0 +1,46 @@
+import java.nio.ByteBuffer;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Pool of reusable byte buffers shared by every connection
+ * Avoids allocating a new buffer for every read and every partial line
+ */
+public class BufferPool {
+    // Size of each pooled buffer
+    public static final int BUFFER_SIZE = 16 * 1024;
+    // Most buffers kept around when idle, so a burst doesn't pin memory forever
+    private static final int MAX_POOLED = 64;
+
+    // Buffers ready to be reused
+    private ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Take a cleared buffer from the pool, allocating one if the pool is empty
+     * @return an empty buffer of BUFFER_SIZE bytes
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Return a buffer to the pool once it is no longer used
+     * @param buffer the buffer to return
+     */
+    public void release(ByteBuffer buffer) {
+        // Only pool standard buffers (i.e not ones grown for an unusually long line)
+        if (buffer.capacity() != BUFFER_SIZE || !buffer.isDirect()) {
+            return;
+        }
+
+        if (buffers.size() < MAX_POOLED) {
+            buffers.offer(buffer);
+        }
+    }
+}
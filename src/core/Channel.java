@@ -24,8 +24,11 @@ import java.util.regex.Matcher;
  */
 
 public class Channel extends Target {
-    // List of users in the channel
-    private List<String> users;
+    // Users in the channel, with an alphabetical view and a history of who came and went
+    private Roster roster = new Roster();
+    // Flag set once the server confirms the client joined, false for a channel only known from its traffic
+    // (e.g messages arriving before the join is confirmed, or after leaving), which is never joined again on reconnect
+    private volatile boolean joined;
     
     /**
      * Constructor for Channel
@@ -42,10 +45,27 @@ public class Channel extends Target {
 
     /**
      * Getter for users
-     * @return list of users in the channel
+     * @return read-only list of users in the channel, in alphabetical order
      */
     public List<String> getUsers() {
-            return users;
+            return roster.getSorted();
+    }
+
+    /**
+     * Getter for the roster, e.g for a view to ask for the users who came and went since it last updated
+     * @return the channel's roster
+     */
+    public Roster getRoster() {
+            return roster;
+    }
+
+    /**
+     * Check if a user is in the channel
+     * @param username username to check
+     * @return true if the user is in the channel, false otherwise
+     */
+    public boolean hasUser(String username) {
+            return roster.contains(username);
     }
 
     /**
@@ -53,15 +73,32 @@ public class Channel extends Target {
      * @param username username to add to the channel
      */
     public void addUser(String username) {
-            users.add(username);
+            roster.add(username);
     }
 
     /**
      * Remover for users
      * @param username username to remove from the channel
+     * @return true if the user was in the channel, false otherwise
+     */
+    public boolean removeUser(String username) {
+            return roster.remove(username);
+    }
+
+    /**
+     * Check if the client has joined the channel
+     * @return true if the server confirmed the client joined, false otherwise
+     */
+    public boolean isJoined() {
+        return joined;
+    }
+
+    /**
+     * Setter for whether the client has joined the channel
+     * @param joined true once the server confirms the client joined
      */
-    public void removeUser(String username) {
-            users.remove(username);
+    public void setJoined(boolean joined) {
+        this.joined = joined;
     }
 
     /**
@@ -80,11 +117,11 @@ public class Channel extends Target {
     }
 
     /**
-     * Overwrite the users in the channel
+     * Overwrite the users in the channel, only changing the users that differ
      * @param users list of users to overwrite the current users
      */
     public void overwriteUsers(String[] users) {
-            this.users = new ArrayList<>(Arrays.asList(users));
+            roster.replaceAll(Arrays.asList(users));
     }
 
     /**
@@ -0,0 +1,68 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Threads shared by every server model, so periodic work doesn't cost a thread per server
+ */
+public class ClientExecutors {
+    // Scheduler for periodic background work (e.g sampling server clocks)
+    private static ScheduledExecutorService scheduler;
+    // The scheduler's only thread, which must never wait on work the scheduler itself has to run
+    private static volatile Thread schedulerThread;
+    // Threads for work that blocks (e.g resolving host names), kept off the event loops and the EDT
+    private static ExecutorService background;
+    // Threads for continuations and listener dispatch
+    private static ExecutorService dispatcher;
+
+    /**
+     * Getter for the shared scheduler, created on first use
+     * @return scheduler shared by all server models
+     */
+    public static synchronized ScheduledExecutorService scheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "chatclient-scheduler");
+                // Background work should never keep the client open on exit
+                thread.setDaemon(true);
+                schedulerThread = thread;
+                return thread;
+            });
+        }
+
+        return scheduler;
+    }
+
+    /**
+     * Check if the current thread is the shared scheduler's (e.g running a keepalive ping or clock sample)
+     * @return true if called from the scheduler, false otherwise
+     */
+    public static boolean onScheduler() {
+        return Thread.currentThread() == schedulerThread;
+    }
+
+    /**
+     * Getter for the shared executor for blocking work, created on first use
+     * @return executor for blocking work, using the threads of the selected execution mode
+     */
+    public static synchronized ExecutorService background() {
+        if (background == null) {
+            background = ExecutionMode.current().newExecutor("chatclient-background");
+        }
+
+        return background;
+    }
+
+    /**
+     * Getter for the shared executor for continuations and listener dispatch, created on first use
+     * Keeps work triggered by replies off the event loops, so they only ever do I/O
+     * @return executor for continuations, using the threads of the selected execution mode
+     */
+    public static synchronized ExecutorService dispatcher() {
+        if (dispatcher == null) {
+            dispatcher = ExecutionMode.current().newExecutor("chatclient-dispatch");
+        }
+
+        return dispatcher;
+    }
+}
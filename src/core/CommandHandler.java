@@ -0,0 +1,7 @@
+/**
+ * Handler for a single command or reply code from the server (e.g PRIVMSG or REPLY_NAMES)
+ */
+@FunctionalInterface
+public interface CommandHandler {
+    void handle(LineTokenizer message);
+}
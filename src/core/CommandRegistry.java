@@ -0,0 +1,77 @@
+import java.util.HashMap;
+
+/**
+ * Table mapping command codes from the server to their handlers
+ * Looks a handler up straight from a tokenized line's command, without creating a String for it
+ */
+public class CommandRegistry {
+    /**
+     * Open-addressed lookup table, never changed once built
+     */
+    private static class Table {
+        private String[] commands;
+        private CommandHandler[] handlers;
+        // Table size minus one, for masking hashes into the table
+        private int mask;
+    }
+
+    // Handlers by command, the source the lookup table is built from
+    private HashMap<String, CommandHandler> handlers = new HashMap<>();
+
+    // Current lookup table, replaced whole whenever a handler is registered
+    private volatile Table table;
+
+    /**
+     * Register a handler for a command, replacing any existing handler for it
+     * @param command the command code (e.g PRIVMSG)
+     * @param handler the handler to call for lines with that command
+     */
+    public synchronized void register(String command, CommandHandler handler) {
+        handlers.put(command, handler);
+        rebuild();
+    }
+
+    /**
+     * Find the handler for a tokenized line's command
+     * @param line the tokenized line
+     * @return the command's handler, or null if none is registered
+     */
+    public CommandHandler lookup(LineTokenizer line) {
+        Table table = this.table;
+        if (table == null) {
+            return null;
+        }
+
+        // Probe from the command's hash until it is found or an empty slot shows it is missing
+        for (int i = line.commandHash() & table.mask; table.commands[i] != null; i = (i + 1) & table.mask) {
+            if (line.commandEquals(table.commands[i])) {
+                return table.handlers[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Rebuild the lookup table from the registered handlers
+     */
+    private void rebuild() {
+        // Keep the table at most half full so probes stay short
+        int size = Integer.highestOneBit(Math.max(1, handlers.size()) * 2) * 2;
+
+        Table newTable = new Table();
+        newTable.commands = new String[size];
+        newTable.handlers = new CommandHandler[size];
+        newTable.mask = size - 1;
+
+        for (String command : handlers.keySet()) {
+            int i = command.hashCode() & newTable.mask;
+            while (newTable.commands[i] != null) {
+                i = (i + 1) & newTable.mask;
+            }
+            newTable.commands[i] = command;
+            newTable.handlers[i] = handlers.get(command);
+        }
+
+        table = newTable;
+    }
+}
@@ -0,0 +1,570 @@
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import java.util.zip.DataFormatException;
+
+/**
+ * A single socket connection to a server, serviced by an event loop
+ * Splits incoming bytes into lines for its handler, and writes queued outgoing lines in batches
+ */
+public class Connection {
+    // Terminator appended to every outgoing line
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    // Socket connected to the server
+    private SocketChannel channel;
+    // Owner of the connection (i.e serverModel)
+    private ConnectionHandler handler;
+    // Loop performing this connection's I/O
+    private EventLoop loop;
+    // Pool to borrow buffers for partial lines from
+    private BufferPool pool;
+    // Key of this connection in the loop's selector, once registered
+    private SelectionKey key;
+
+    // What to do with incoming lines that aren't valid UTF-8
+    private static final MalformedInputPolicy MALFORMED_INPUT = MalformedInputPolicy.configured();
+
+    // Lines are always UTF-8, whatever the host's locale
+    // Decoder reused for every incoming line, reporting malformed input so the fallback can take over
+    private CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPORT)
+        .onUnmappableCharacter(CodingErrorAction.REPORT);
+    // Decoder for lines that aren't valid UTF-8, created on first use
+    private CharsetDecoder fallbackDecoder;
+    // Number of incoming lines that needed the fallback
+    private long malformedLines;
+    // Characters of the line being delivered, reused (and grown if needed) for every line
+    private CharBuffer lineChars = CharBuffer.allocate(1024);
+    // Encoder reused for every outgoing line (only unpaired surrogates can fail, and are replaced)
+    private CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    // Start of a line that has not been terminated yet, only while one is pending
+    private ByteBuffer partialLine;
+
+    // Compression of both directions, once agreed with the server
+    private DeflateCodec compression;
+    // Decompressed bytes waiting to be split into lines, borrowed from the pool while compressing
+    private ByteBuffer inflated;
+
+    // When the latest bytes were read from the socket (from System.nanoTime), i.e when the lines being handled arrived
+    private long readNanos;
+
+    // Lines waiting to be written
+    private OutboundQueue outbound;
+    // Batch the socket could not take all of, written before anything else
+    private ByteBuffer pendingBatch;
+    // Flag set while a flush has been handed to the loop but not yet started
+    private AtomicBoolean flushScheduled = new AtomicBoolean();
+    // Flag set while a flush is waiting for the rate limit to allow more lines
+    private AtomicBoolean rateLimitWaiting = new AtomicBoolean();
+    // Flag to close once all queued lines are written
+    private volatile boolean closeRequested;
+    // Flag set once the connection is closed
+    private AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * Constructor for a connection
+     * @param channel a connected, non-blocking socket channel
+     * @param handler the owner to pass lines and closure to
+     * @param loop the loop performing this connection's I/O
+     * @param pool the pool to borrow buffers from
+     * @param outbound the queue of lines waiting to be written
+     */
+    public Connection(SocketChannel channel, ConnectionHandler handler, EventLoop loop, BufferPool pool, OutboundQueue outbound) {
+        this.channel = channel;
+        this.handler = handler;
+        this.loop = loop;
+        this.pool = pool;
+        this.outbound = outbound;
+    }
+
+    /**
+     * Getter for the socket channel
+     * @return the socket channel
+     */
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Queue a line to be sent to the server
+     * Returns as soon as the line is queued, without waiting for it to be written
+     * @param line the line to send, without a terminator
+     * @return true if the line was queued, false if it was chat dropped because the queue is full
+     * @throws IOException if the connection is closed, or the queue is full and the line can't be dropped quietly
+     */
+    public boolean send(String line) throws IOException {
+        if (closed.get() || closeRequested) {
+            throw new ClosedChannelException();
+        }
+
+        // Only the loop drains the queue, and the scheduler wakes it once the rate limit allows, so neither may wait on it
+        if (!outbound.offer(line, !loop.inEventLoop() && !ClientExecutors.onScheduler())) {
+            return false;
+        }
+
+        scheduleFlush();
+        return true;
+    }
+
+    /**
+     * Run a task on the loop performing this connection's I/O, in order with the lines it reads
+     * @param task the task to run
+     */
+    public void execute(Runnable task) {
+        loop.execute(task);
+    }
+
+    /**
+     * Getter for the queue of lines waiting to be written (e.g to see how far behind sending is)
+     * @return the outbound queue
+     */
+    public OutboundQueue getOutboundQueue() {
+        return outbound;
+    }
+
+    /**
+     * Close the connection once every queued line has been written (e.g after sending QUIT)
+     */
+    public void closeAfterFlush() {
+        closeRequested = true;
+        loop.execute(this::flush);
+    }
+
+    /**
+     * Hand a flush to the loop, unless one is already waiting to start
+     */
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            loop.execute(this::flush);
+        }
+    }
+
+    /**
+     * Close the connection immediately, discarding any queued lines
+     */
+    public void close() {
+        loop.execute(() -> close(null));
+    }
+
+    /**
+     * Close the connection immediately because it has failed (e.g the server stopped responding)
+     * @param cause the error to pass on to the handler
+     */
+    public void fail(Exception cause) {
+        loop.execute(() -> close(cause));
+    }
+
+    /**
+     * Compress everything written and read from now on
+     * Must be called from the loop's thread while handling the server's agreement to compress,
+     * so the bytes straight after that line are already decompressed
+     */
+    public void startCompression() {
+        if (compression != null) {
+            return;
+        }
+
+        compression = new DeflateCodec();
+        inflated = pool.acquire();
+    }
+
+    /**
+     * Getter for the connection's compression
+     * @return the compression, or null if the connection isn't compressed
+     */
+    public DeflateCodec getCompression() {
+        return compression;
+    }
+
+    /**
+     * Check if the connection is closed
+     * @return true if closed, false otherwise
+     */
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * Called by the loop once the connection is registered with its selector
+     * @param key the connection's selection key
+     */
+    void onRegistered(SelectionKey key) {
+        this.key = key;
+    }
+
+    /**
+     * Called by the loop when the socket has bytes to read
+     * @param readBuffer the loop's read buffer
+     * @throws IOException if reading fails
+     */
+    void onReadable(ByteBuffer readBuffer) throws IOException {
+        readBuffer.clear();
+        int read = channel.read(readBuffer);
+
+        // Server closed the connection
+        if (read == -1) {
+            close(null);
+            return;
+        }
+
+        // Every line in this read arrived now, however long the lines before it take to handle
+        readNanos = System.nanoTime();
+
+        readBuffer.flip();
+        if (compression != null) {
+            inflateLines(readBuffer);
+        } else {
+            splitLines(readBuffer);
+        }
+    }
+
+    /**
+     * Pass each complete line in a buffer to the handler, keeping any unterminated line for later
+     * @param bytes buffer positioned on the bytes to split, consumed by this call
+     * @throws IOException if compressed bytes that follow can't be decompressed
+     */
+    private void splitLines(ByteBuffer bytes) throws IOException {
+        boolean compressed = compression != null;
+        int end = bytes.limit();
+        int lineStart = bytes.position();
+
+        // Pass each complete line to the handler
+        for (int i = lineStart; i < end && !closed.get(); i++) {
+            if (bytes.get(i) == '\n') {
+                bytes.limit(i).position(lineStart);
+                deliverLine(bytes);
+                bytes.limit(end);
+                lineStart = i + 1;
+
+                // Handler agreed to compression, so every byte after this line is compressed
+                if (!compressed && compression != null) {
+                    bytes.position(lineStart);
+                    inflateLines(bytes);
+                    return;
+                }
+            }
+        }
+
+        // Keep the start of an unterminated line until the rest arrives
+        if (lineStart < end && !closed.get()) {
+            bytes.limit(end).position(lineStart);
+            appendPartial(bytes);
+        }
+    }
+
+    /**
+     * Decompress bytes read from the socket and pass each complete line to the handler
+     * @param compressedBytes buffer positioned on the compressed bytes, consumed by this call
+     * @throws IOException if the bytes can't be decompressed
+     */
+    private void inflateLines(ByteBuffer compressedBytes) throws IOException {
+        compression.setInput(compressedBytes);
+
+        try {
+            // Decompress a buffer at a time until the inflater needs more input
+            while (!closed.get()) {
+                inflated.clear();
+                if (compression.inflate(inflated) == 0) {
+                    break;
+                }
+
+                inflated.flip();
+                splitLines(inflated);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid compressed data from server", e);
+        }
+    }
+
+    /**
+     * Called by the loop when the socket can take more bytes
+     * @throws IOException if writing fails
+     */
+    void onWritable() throws IOException {
+        flush();
+    }
+
+    /**
+     * Write queued lines as the socket will take them, one buffered write per batch of lines
+     * Closes the connection afterwards if requested and everything was written
+     */
+    private void flush() {
+        // Lines queued from now on need another flush, unless this one picks them up
+        flushScheduled.set(false);
+
+        if (closed.get() || key == null) {
+            return;
+        }
+
+        try {
+            // Finish the batch the socket couldn't take last time before starting a new one
+            if (pendingBatch != null && !writeBatch(pendingBatch)) {
+                return;
+            }
+
+            // Coalesce as many queued lines as fit into one buffer, and write them together
+            ByteBuffer batch;
+            while ((batch = fillBatch()) != null) {
+                // Compress the whole batch at once, flushed so the server can decode it straight away
+                if (compression != null) {
+                    ByteBuffer plain = batch;
+                    batch = compression.deflate(plain, pool);
+                    pool.release(plain);
+                }
+
+                if (!writeBatch(batch)) {
+                    return;
+                }
+            }
+
+            // Everything allowed so far is written, so stop waiting for the socket to become writable
+            key.interestOps(SelectionKey.OP_READ);
+
+            // Once quitting, only the urgent lines (i.e QUIT) matter, lines held back by the rate limit are dropped
+            if (closeRequested && outbound.size(SendPriority.URGENT) == 0) {
+                close(null);
+                return;
+            }
+
+            // Lines are held back by the rate limit, so flush again once it allows more
+            long waitNanos = outbound.nanosUntilReady(System.nanoTime());
+            if (waitNanos > 0 && rateLimitWaiting.compareAndSet(false, true)) {
+                ClientExecutors.scheduler().schedule(() -> {
+                    rateLimitWaiting.set(false);
+                    scheduleFlush();
+                }, waitNanos, TimeUnit.NANOSECONDS);
+            }
+
+        } catch (IOException e) {
+            close(e);
+        }
+    }
+
+    /**
+     * Encode queued lines into a buffer until it is full or the queue is empty
+     * @return the filled buffer ready to write, or null if no lines were queued
+     */
+    private ByteBuffer fillBatch() {
+        long now = System.nanoTime();
+        String line = outbound.peek(now);
+        if (line == null) {
+            return null;
+        }
+
+        ByteBuffer batch = pool.acquire();
+        while (line != null) {
+            int maxBytes = (int) Math.ceil((line.length() + LINE_SEPARATOR.length()) * encoder.maxBytesPerChar());
+
+            if (batch.remaining() < maxBytes) {
+                // Batch is full, so write it and continue with a new one
+                if (batch.position() > 0) {
+                    break;
+                }
+
+                // A single line too long for a pooled buffer gets a buffer of its own
+                pool.release(batch);
+                batch = ByteBuffer.allocate(maxBytes);
+            }
+
+            encoder.reset();
+            encoder.encode(CharBuffer.wrap(line), batch, false);
+            encoder.encode(CharBuffer.wrap(LINE_SEPARATOR), batch, true);
+            encoder.flush(batch);
+
+            outbound.poll(now);
+            line = outbound.peek(now);
+        }
+
+        batch.flip();
+        return batch;
+    }
+
+    /**
+     * Write a batch with a single write, keeping it for later if the socket can't take all of it
+     * @param batch the batch to write
+     * @return true if the whole batch was written, false if the socket is full
+     * @throws IOException if writing fails
+     */
+    private boolean writeBatch(ByteBuffer batch) throws IOException {
+        channel.write(batch);
+
+        // Socket is full, so wait until the loop reports it writable again
+        if (batch.hasRemaining()) {
+            pendingBatch = batch;
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            return false;
+        }
+
+        pool.release(batch);
+        pendingBatch = null;
+        return true;
+    }
+
+    /**
+     * Decode a line and pass it to the handler
+     * @param lineBytes buffer positioned on the line's bytes, without the terminator
+     */
+    private void deliverLine(ByteBuffer lineBytes) {
+        // If the line started in an earlier read, join it onto the pending start
+        if (partialLine != null) {
+            appendPartial(lineBytes);
+            partialLine.flip();
+            decodeLine(partialLine);
+            pool.release(partialLine);
+            partialLine = null;
+        } else {
+            decodeLine(lineBytes);
+        }
+
+        // Accept both \n and \r\n terminated lines
+        int length = lineChars.position();
+        if (length > 0 && lineChars.get(length - 1) == '\r') {
+            length--;
+        }
+
+        handler.onLine(lineChars.array(), length);
+    }
+
+    /**
+     * Decode a line's bytes into the reusable line buffer
+     * @param bytes buffer positioned on the line's bytes
+     */
+    private void decodeLine(ByteBuffer bytes) {
+        // Make sure the line fits, as a line never decodes to more characters than it has bytes
+        if (lineChars.capacity() < bytes.remaining()) {
+            lineChars = CharBuffer.allocate(Math.max(lineChars.capacity() * 2, bytes.remaining()));
+        }
+
+        lineChars.clear();
+        int start = bytes.position();
+
+        decoder.reset();
+        CoderResult result = decoder.decode(bytes, lineChars, true);
+        if (!result.isError()) {
+            decoder.flush(lineChars);
+            return;
+        }
+
+        // Not valid UTF-8, so decode the whole line again with the fallback instead of corrupting it
+        malformedLines++;
+        bytes.position(start);
+        lineChars.clear();
+
+        CharsetDecoder fallback = fallbackDecoder();
+        fallback.reset();
+        fallback.decode(bytes, lineChars, true);
+        fallback.flush(lineChars);
+    }
+
+    /**
+     * Getter for the decoder used for lines that aren't valid UTF-8, created on first use
+     * @return the fallback decoder for the configured policy
+     */
+    private CharsetDecoder fallbackDecoder() {
+        if (fallbackDecoder == null) {
+            if (MALFORMED_INPUT == MalformedInputPolicy.LATIN_1) {
+                // Every byte is a valid Latin-1 character, so this can never fail
+                fallbackDecoder = StandardCharsets.ISO_8859_1.newDecoder();
+            } else {
+                fallbackDecoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            }
+        }
+
+        return fallbackDecoder;
+    }
+
+    /**
+     * Getter for when the line being handled arrived, only meaningful on the loop thread while it passes lines on
+     * @return when the latest bytes were read from the socket, from System.nanoTime
+     */
+    public long getReadNanos() {
+        return readNanos;
+    }
+
+    /**
+     * Getter for the number of incoming lines that weren't valid UTF-8
+     * @return number of lines decoded with the fallback
+     */
+    public long getMalformedLines() {
+        return malformedLines;
+    }
+
+    /**
+     * Append bytes to the pending start of a line, growing it for unusually long lines
+     * @param bytes buffer positioned on the bytes to append
+     */
+    private void appendPartial(ByteBuffer bytes) {
+        if (partialLine == null) {
+            partialLine = pool.acquire();
+        }
+
+        if (partialLine.remaining() < bytes.remaining()) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(partialLine.capacity() * 2, partialLine.position() + bytes.remaining()));
+            partialLine.flip();
+            grown.put(partialLine);
+            pool.release(partialLine);
+            partialLine = grown;
+        }
+
+        partialLine.put(bytes);
+    }
+
+    /**
+     * Close the socket and tell the handler, exactly once
+     * Must be called from the loop's thread
+     * @param cause the error that closed the connection, or null
+     */
+    void close(Exception cause) {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Nothing more can be done with a socket that fails to close
+        }
+
+        // Discard anything still waiting to be written, releasing blocked senders
+        outbound.close();
+
+        // Give back any borrowed buffers
+        if (partialLine != null) {
+            pool.release(partialLine);
+            partialLine = null;
+        }
+        if (pendingBatch != null) {
+            pool.release(pendingBatch);
+            pendingBatch = null;
+        }
+        if (compression != null) {
+            compression.end();
+            pool.release(inflated);
+            inflated = null;
+        }
+
+        handler.onClosed(cause);
+    }
+}
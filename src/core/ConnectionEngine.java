@@ -0,0 +1,77 @@
+import java.io.IOException;
+
+import java.nio.channels.SocketChannel;
+
+import java.time.Duration;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Engine performing the I/O of every server connection on a fixed number of event loops
+ * Adding servers adds connections to existing loops rather than new threads
+ */
+public class ConnectionEngine {
+    // Number of loops used when not configured, overridable with -Dchatclient.eventLoops=N
+    private static final int DEFAULT_LOOP_COUNT = 1;
+
+    // Engine shared by all server models
+    private static ConnectionEngine shared;
+
+    /**
+     * Getter for the engine shared by all server models, created on first use
+     * @return the shared engine
+     */
+    public static synchronized ConnectionEngine shared() {
+        if (shared == null) {
+            int loopCount = Integer.getInteger("chatclient.eventLoops", DEFAULT_LOOP_COUNT);
+            try {
+                shared = new ConnectionEngine(loopCount);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not start connection engine", e);
+            }
+        }
+
+        return shared;
+    }
+
+    // Buffers shared by every loop and connection
+    private BufferPool pool = new BufferPool();
+    // Loops connections are spread across
+    private EventLoop[] loops;
+    // Counter used to hand out loops round robin
+    private AtomicInteger nextLoop = new AtomicInteger();
+
+    /**
+     * Constructor for an engine, which starts its loops immediately
+     * @param loopCount number of event loops (i.e threads) to use
+     * @throws IOException if a loop's selector cannot be opened
+     */
+    public ConnectionEngine(int loopCount) throws IOException {
+        loops = new EventLoop[Math.max(1, loopCount)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop("chatclient-io-" + i, pool);
+        }
+    }
+
+    /**
+     * Connect to a server without blocking the caller, racing all of the host's addresses
+     * @param host the host to connect to
+     * @param port the port to connect to
+     * @param timeout how long to wait for the connection
+     * @param handler the owner to pass lines and closure to
+     * @param outbound the queue of lines waiting to be written
+     * @return a future that completes with the connection, for sending lines and closing
+     */
+    public CompletableFuture<Connection> connect(String host, int port, Duration timeout, ConnectionHandler handler, OutboundQueue outbound) {
+        // Spread connections across loops round robin
+        EventLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+
+        // The loop that won the race keeps the socket, so its selection key can be reused
+        return AddressRace.connect(loop, host, port, timeout).thenApply(channel -> {
+            Connection connection = new Connection(channel, handler, loop, pool, outbound);
+            loop.register(connection);
+            return connection;
+        });
+    }
+}
@@ -0,0 +1,9 @@
+/**
+ * Interface for a connection to pass what it reads from the server to its owner (i.e serverModel)
+ */
+public interface ConnectionHandler {
+    // A complete line is received from the server (the array is reused once this returns)
+    void onLine(char[] line, int length);
+    // The connection closes, with the error that closed it (null on end of stream or a local close)
+    void onClosed(Exception cause);
+}
@@ -0,0 +1,15 @@
+/**
+ * Stages in the lifecycle of a connection to a server
+ */
+public enum ConnectionState {
+    // Opening the socket to the server
+    CONNECTING,
+    // Socket is open, waiting for the server to accept the user's nickname
+    REGISTERING,
+    // Nickname accepted, connection can be used
+    READY,
+    // Client is quitting, waiting for queued lines to be written and the socket to close
+    CLOSING,
+    // Socket is closed (or was never opened)
+    CLOSED
+}
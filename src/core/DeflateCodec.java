@@ -0,0 +1,154 @@
+import java.nio.ByteBuffer;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * DEFLATE compression for both directions of one connection
+ * The deflater and inflater keep their dictionaries for the life of the connection, so repetitive traffic
+ * compresses well, and every outbound batch ends with a sync flush so the server can decode it straight away
+ * Only used by the connection's event loop
+ */
+public class DeflateCodec {
+    // Name of the compression in the COMPRESS command and its reply
+    public static final String NAME = "DEFLATE";
+
+    // Compression context for outgoing bytes
+    private Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    // Decompression context for incoming bytes
+    private Inflater inflater = new Inflater();
+
+    // Bytes before compression and on the wire, in each direction
+    private long plainBytesOut;
+    private long compressedBytesOut;
+    private long plainBytesIn;
+    private long compressedBytesIn;
+    // Time spent compressing and decompressing
+    private long deflateNanos;
+    private long inflateNanos;
+
+    /**
+     * Compress a batch, ending with a sync flush so everything in it can be decoded on arrival
+     * @param plain buffer positioned on the bytes to compress, consumed by this call
+     * @param pool pool to borrow the output buffer from
+     * @return buffer ready to write, holding the compressed batch
+     */
+    public ByteBuffer deflate(ByteBuffer plain, BufferPool pool) {
+        long start = System.nanoTime();
+        plainBytesOut += plain.remaining();
+
+        deflater.setInput(plain);
+        ByteBuffer compressed = pool.acquire();
+
+        // A sync flush is complete once the deflater leaves room in the output
+        while (true) {
+            deflater.deflate(compressed, Deflater.SYNC_FLUSH);
+            if (compressed.hasRemaining()) {
+                break;
+            }
+
+            // Incompressible batch bigger than a pooled buffer, so grow the output
+            ByteBuffer grown = ByteBuffer.allocate(compressed.capacity() * 2);
+            compressed.flip();
+            grown.put(compressed);
+            pool.release(compressed);
+            compressed = grown;
+        }
+
+        compressed.flip();
+        compressedBytesOut += compressed.remaining();
+        deflateNanos += System.nanoTime() - start;
+        return compressed;
+    }
+
+    /**
+     * Give the inflater compressed bytes read from the socket
+     * @param compressed buffer positioned on the compressed bytes, which must stay untouched until fully inflated
+     */
+    public void setInput(ByteBuffer compressed) {
+        compressedBytesIn += compressed.remaining();
+        inflater.setInput(compressed);
+    }
+
+    /**
+     * Decompress as much of the input as fits in a buffer
+     * @param plain buffer to decompress into
+     * @return number of bytes decompressed, 0 once the input is used up
+     * @throws DataFormatException if the input isn't valid DEFLATE data
+     */
+    public int inflate(ByteBuffer plain) throws DataFormatException {
+        long start = System.nanoTime();
+        int inflated = inflater.inflate(plain);
+
+        plainBytesIn += inflated;
+        inflateNanos += System.nanoTime() - start;
+        return inflated;
+    }
+
+    /**
+     * Release the native memory held by the deflater and inflater
+     */
+    public void end() {
+        deflater.end();
+        inflater.end();
+    }
+
+    /**
+     * Get the proportion of bytes saved by compression, over both directions
+     * @return 1 - compressed / plain, or 0 if nothing has been compressed
+     */
+    public double getSaving() {
+        long plain = plainBytesOut + plainBytesIn;
+        return plain == 0 ? 0 : 1 - (double) (compressedBytesOut + compressedBytesIn) / plain;
+    }
+
+    /**
+     * Getter for the bytes sent, before compression
+     * @return number of plain bytes sent
+     */
+    public long getPlainBytesOut() {
+        return plainBytesOut;
+    }
+
+    /**
+     * Getter for the bytes sent, after compression (i.e on the wire)
+     * @return number of compressed bytes sent
+     */
+    public long getCompressedBytesOut() {
+        return compressedBytesOut;
+    }
+
+    /**
+     * Getter for the bytes received, after decompression
+     * @return number of plain bytes received
+     */
+    public long getPlainBytesIn() {
+        return plainBytesIn;
+    }
+
+    /**
+     * Getter for the bytes received, before decompression (i.e on the wire)
+     * @return number of compressed bytes received
+     */
+    public long getCompressedBytesIn() {
+        return compressedBytesIn;
+    }
+
+    /**
+     * Getter for the time spent compressing and decompressing
+     * @return total nanoseconds spent in the deflater and inflater
+     */
+    public long getCpuNanos() {
+        return deflateNanos + inflateNanos;
+    }
+
+    /**
+     * Summarise the bytes saved and time spent for display
+     * @return summary of the compression
+     */
+    public String toString() {
+        return String.format("out %d -> %d bytes, in %d -> %d bytes, saving %.1f%%, %.2fms cpu",
+            plainBytesOut, compressedBytesOut, compressedBytesIn, plainBytesIn, getSaving() * 100, getCpuNanos() / 1e6);
+    }
+}
@@ -0,0 +1,139 @@
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Single thread that owns a selector and performs all I/O for the connections registered with it
+ */
+public class EventLoop implements Runnable {
+    // Selector watching every connection on this loop
+    private Selector selector;
+    // Tasks handed to the loop by other threads (e.g registering a connection or requesting a write)
+    private ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    // Buffer every read on this loop goes through, borrowed from the pool for the loop's lifetime
+    private ByteBuffer readBuffer;
+    // Thread running the loop
+    private Thread thread;
+
+    /**
+     * Constructor for an event loop, which starts its thread immediately
+     * @param name name of the loop's thread
+     * @param pool pool to borrow the read buffer from
+     * @throws IOException if the selector cannot be opened
+     */
+    public EventLoop(String name, BufferPool pool) throws IOException {
+        selector = Selector.open();
+        readBuffer = pool.acquire();
+
+        thread = new Thread(this, name);
+        // The loop should never keep the client open on exit
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Run a task on the loop's thread
+     * @param task the task to run
+     */
+    public void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Check if the calling thread is this loop's thread
+     * @return true if called from the loop, false otherwise
+     */
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Start watching a connection for reads
+     * @param connection the connection to watch
+     */
+    public void register(Connection connection) {
+        execute(() -> {
+            try {
+                SelectionKey key = connection.getChannel().register(selector, SelectionKey.OP_READ, connection);
+                connection.onRegistered(key);
+            } catch (IOException e) {
+                connection.close(e);
+            }
+        });
+    }
+
+    /**
+     * Start watching a socket that is still connecting, must be called from the loop's thread
+     * @param channel the connecting socket
+     * @param race the race the socket is part of, told when the connect finishes
+     * @throws IOException if the socket cannot be registered
+     */
+    void registerConnect(SocketChannel channel, AddressRace race) throws IOException {
+        channel.register(selector, SelectionKey.OP_CONNECT, race);
+    }
+
+    /**
+     * Wait for connections to become ready and service them, forever
+     */
+    public void run() {
+        while (true) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                e.printStackTrace();
+                continue;
+            }
+
+            // Run tasks handed over by other threads
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    // A misbehaving task must not stop the loop serving every connection
+                    e.printStackTrace();
+                }
+            }
+
+            // Service every connection that is ready
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+
+                // Sockets still connecting belong to a race rather than a connection
+                if (key.attachment() instanceof AddressRace) {
+                    if (key.isValid() && key.isConnectable()) {
+                        ((AddressRace) key.attachment()).onConnectable(key);
+                    }
+                    continue;
+                }
+
+                Connection connection = (Connection) key.attachment();
+                try {
+                    if (key.isReadable()) {
+                        connection.onReadable(readBuffer);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.onWritable();
+                    }
+                } catch (CancelledKeyException e) {
+                    // Connection was closed while being serviced
+                } catch (IOException e) {
+                    connection.close(e);
+                } catch (RuntimeException e) {
+                    // A misbehaving handler must not stop the loop serving every other connection
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
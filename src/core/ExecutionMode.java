@@ -0,0 +1,127 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Kind of threads the client runs background work, continuations and listener dispatch on
+ * Selected once at startup (e.g with -Dchatclient.executionMode=virtual) so the two can be benchmarked against each other
+ */
+public enum ExecutionMode {
+    // Ordinary pooled platform threads, each with its own stack
+    PLATFORM,
+    // Virtual threads (JDK 21+), which cost kilobytes each, so can be created per task
+    VIRTUAL;
+
+    // Mode chosen for this run, decided on first use
+    private static ExecutionMode selected;
+
+    /**
+     * Getter for the mode chosen for this run
+     * Falls back to platform threads if virtual threads were asked for but the JDK doesn't have them
+     * @return the execution mode
+     */
+    public static synchronized ExecutionMode current() {
+        if (selected == null) {
+            select(parse(System.getProperty("chatclient.executionMode", "platform")));
+        }
+
+        return selected;
+    }
+
+    /**
+     * Read a mode from its name (e.g from -Dchatclient.executionMode or --execution-mode)
+     * Falls back to platform threads if the name isn't a mode, rather than failing later in whatever first needs a thread
+     * @param name the mode's name, in any case
+     * @return the execution mode
+     */
+    public static ExecutionMode parse(String name) {
+        for (ExecutionMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(name.trim())) {
+                return mode;
+            }
+        }
+
+        System.err.println("Unknown execution mode \"" + name + "\" (expected platform or virtual), using platform threads instead");
+        return PLATFORM;
+    }
+
+    /**
+     * Choose the mode for this run, which must happen before any shared executor is created
+     * @param mode the mode to use
+     */
+    public static synchronized void select(ExecutionMode mode) {
+        if (mode == VIRTUAL && !virtualThreadsSupported()) {
+            System.err.println("Virtual threads need JDK 21 or later, using platform threads instead");
+            mode = PLATFORM;
+        }
+
+        selected = mode;
+    }
+
+    /**
+     * Check if the running JDK has virtual threads
+     * @return true if virtual threads can be created, false otherwise
+     */
+    public static boolean virtualThreadsSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Create a factory for threads of this mode
+     * @param name prefix for the names of the threads
+     * @return the thread factory
+     */
+    public ThreadFactory threadFactory(String name) {
+        if (this == VIRTUAL) {
+            return virtualThreadFactory(name);
+        }
+
+        return task -> {
+            Thread thread = new Thread(task, name);
+            // Background work should never keep the client open on exit
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Create an executor for short or blocking tasks of this mode
+     * @param name prefix for the names of the executor's threads
+     * @return a cached pool of platform threads, or a new virtual thread per task
+     */
+    public ExecutorService newExecutor(String name) {
+        if (this == VIRTUAL) {
+            // Virtual threads are cheap enough that pooling them is pointless
+            try {
+                return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, threadFactory(name));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Could not create virtual thread executor", e);
+            }
+        }
+
+        return Executors.newCachedThreadPool(threadFactory(name));
+    }
+
+    /**
+     * Create a factory for virtual threads, through reflection so the client still builds and runs on older JDKs
+     * @param name prefix for the names of the threads
+     * @return the thread factory
+     */
+    private static ThreadFactory virtualThreadFactory(String name) {
+        try {
+            // Equivalent to Thread.ofVirtual().name(name + "-", 0).factory()
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create virtual thread factory", e);
+        }
+    }
+}
@@ -0,0 +1,504 @@
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Client without a GUI, for bots, relays and throughput testing
+ * Drives any number of server models from commands in a config file and/or on stdin, one command per line,
+ * listening to them with the same listeners as the Swing client and logging (or relaying) what they receive
+ *
+ * Commands (a server name of * means every server):
+ *   connect <name> <host> <port> <nickname>    connect to a server, known from then on by name
+ *   spawn <count> <host> <port> <prefix>       connect count times, as prefix1, prefix2, ... (e.g for load testing)
+ *   join <name> <#channel>                     join a channel once connected
+ *   part <name> <#channel>                     leave a channel
+ *   msg <name> <target> <text>                 send a message to a channel or user
+ *   relay <name> <target> <toName> <toTarget>  forward every message in a target to a target on another server
+ *   disconnect <name>                          disconnect from a server
+ *   log on|off                                 turn logging of received messages on or off
+ *   status                                     print each server's state and the message counts and latencies
+ *   sleep <millis>                             wait before running the next command
+ *   quit                                       disconnect from every server and exit
+ * Blank lines and lines starting with # are ignored
+ *
+ * Bots and load tests can send far more than anyone reads, so messages are neither stored on disk nor indexed for
+ * search unless asked for with -Dchatclient.storeDir and -Dchatclient.search=true
+ */
+public class HeadlessClient {
+    // Servers by the name they were given, in the order they were connected
+    private Map<String, Session> sessions = new LinkedHashMap<>();
+
+    // Where received messages and events are logged
+    private PrintStream out;
+    // Flag to log each received message, turned off for throughput testing
+    private volatile boolean logMessages = true;
+
+    // Messages received and relayed over every server
+    private AtomicLong received = new AtomicLong();
+    private AtomicLong relayed = new AtomicLong();
+
+    // Released by the quit command
+    private CountDownLatch quit = new CountDownLatch(1);
+
+    /**
+     * One server model driven by the headless client, and the listener for its events
+     */
+    private class Session implements ServerListener, TargetListener {
+        private String name;
+        private ServerModel model;
+        // Completes once the connection is ready, so commands given before then wait for it
+        private CompletableFuture<Void> ready;
+        // Forwarders of the messages in each of this server's targets to targets on other servers
+        private Map<String, List<Consumer<String>>> relays = new ConcurrentHashMap<>();
+        // Messages received from this server
+        private AtomicLong received = new AtomicLong();
+
+        /**
+         * Constructor for a session
+         * @param name name the server is known by in commands
+         * @param model the server model to drive
+         */
+        private Session(String name, ServerModel model) {
+            this.name = name;
+            this.model = model;
+        }
+
+        /**
+         * Listener for an error in the server model
+         * @param error the error message
+         */
+        public void onError(String error) {
+            log(name + " error: " + error);
+        }
+
+        /**
+         * Listener for the connection moving to a new stage in its lifecycle
+         * @param model the server model
+         * @param state the new stage
+         */
+        public void onStateChanged(ServerModel model, ConnectionState state) {
+            log(name + " " + state.toString().toLowerCase());
+        }
+
+        /**
+         * Listener for a user quitting the server
+         * @param usernameWhoQuit the user who quit
+         */
+        public void onQuit(String usernameWhoQuit) {
+            if (logMessages) {
+                log(name + " " + usernameWhoQuit + " quit");
+            }
+        }
+
+        /**
+         * Listener for a user joining a channel
+         * @param usernameWhoJoined the user who joined
+         * @param channel the channel joined
+         */
+        public void onJoinChannel(String usernameWhoJoined, Channel channel) {
+            if (logMessages) {
+                log(name + " " + channel.getName() + " " + usernameWhoJoined + " joined");
+            }
+        }
+
+        /**
+         * Listener for a user leaving a channel
+         * @param usernameWhoQuit the user who left
+         * @param channel the channel left
+         */
+        public void onPartChannel(String usernameWhoQuit, Channel channel) {
+            if (logMessages) {
+                log(name + " " + channel.getName() + " " + usernameWhoQuit + " left");
+            }
+        }
+
+        /**
+         * Listener for a message received in any target of the server
+         * @param message the message
+         */
+        public void onMessageRecieved(Message message) {
+            // Nothing is painted without a screen, so dispatch is the last stage timed
+            PipelineLatency latency = PipelineLatency.shared();
+            latency.record(message, MessageStage.DISPATCHED);
+            latency.finish(message);
+            received.incrementAndGet();
+            HeadlessClient.this.received.incrementAndGet();
+
+            if (logMessages) {
+                log(name + " " + message.getTarget() + " " + message.getSender() + ": " + message.getMessage());
+            }
+
+            // Forward the message, unless the client sent it (e.g it is itself a relayed message)
+            List<Consumer<String>> forwards = relays.get(message.getTarget());
+            if (forwards != null && !message.getSender().equals(model.getNickname())) {
+                String forwarded = "<" + message.getSender() + "> " + message.getMessage();
+                for (Consumer<String> forward : forwards) {
+                    forward.accept(forwarded);
+                }
+            }
+        }
+    }
+
+    /**
+     * Constructor for the headless client
+     * @param out where to log received messages and events
+     */
+    public HeadlessClient(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Run one command
+     * @param line the command and its arguments
+     * @return false once the quit command has run, true otherwise
+     */
+    public boolean execute(String line) {
+        line = line.trim();
+
+        // Skip blank lines and comments
+        if (line.isEmpty() || line.startsWith("#")) {
+            return true;
+        }
+
+        // Split off no more arguments than the command takes, so message text keeps its spaces
+        String[] words = line.split("\\s+", 2);
+        String command = words[0].toLowerCase();
+        String rest = words.length > 1 ? words[1] : "";
+
+        try {
+            switch (command) {
+                case "connect": {
+                    String[] args = arguments(rest, 4, "connect <name> <host> <port> <nickname>");
+                    connect(args[0], args[1], Integer.parseInt(args[2]), args[3]);
+                    break;
+                }
+                case "spawn": {
+                    String[] args = arguments(rest, 4, "spawn <count> <host> <port> <prefix>");
+                    int count = Integer.parseInt(args[0]);
+                    for (int i = 1; i <= count; i++) {
+                        connect(args[3] + i, args[1], Integer.parseInt(args[2]), args[3] + i);
+                    }
+                    break;
+                }
+                case "join": {
+                    String[] args = arguments(rest, 2, "join <name> <#channel>");
+                    for (Session session : select(args[0])) {
+                        whenReady(session, () -> session.model.joinChannel(args[1]));
+                    }
+                    break;
+                }
+                case "part": {
+                    String[] args = arguments(rest, 2, "part <name> <#channel>");
+                    for (Session session : select(args[0])) {
+                        whenReady(session, () -> session.model.partChannel(args[1]));
+                    }
+                    break;
+                }
+                case "msg": {
+                    String[] args = arguments(rest, 3, "msg <name> <target> <text>");
+                    for (Session session : select(args[0])) {
+                        whenReady(session, () -> {
+                            session.model.sendMessage(args[1], args[2]);
+                            return CompletableFuture.completedFuture(null);
+                        });
+                    }
+                    break;
+                }
+                case "relay": {
+                    String[] args = arguments(rest, 4, "relay <name> <target> <toName> <toTarget>");
+                    relay(args[0], args[1], args[2], args[3]);
+                    break;
+                }
+                case "disconnect": {
+                    String[] args = arguments(rest, 1, "disconnect <name>");
+                    for (Session session : select(args[0])) {
+                        session.model.disconnect();
+                    }
+                    break;
+                }
+                case "log": {
+                    logMessages = !rest.equalsIgnoreCase("off");
+                    break;
+                }
+                case "status": {
+                    printStatus();
+                    break;
+                }
+                case "sleep": {
+                    Thread.sleep(Long.parseLong(arguments(rest, 1, "sleep <millis>")[0]));
+                    break;
+                }
+                case "quit": {
+                    quit();
+                    return false;
+                }
+                default:
+                    log("Unknown command: " + command);
+            }
+
+        } catch (Exception e) {
+            // A bad command must not stop the commands after it
+            log("Could not run \"" + line + "\": " + e.getMessage());
+        }
+
+        return true;
+    }
+
+    /**
+     * Split a command's arguments, keeping spaces in the last one
+     * @param rest everything after the command
+     * @param count number of arguments the command takes
+     * @param usage how to use the command, for the error if arguments are missing
+     * @return the arguments
+     */
+    private String[] arguments(String rest, int count, String usage) {
+        String[] args = rest.split("\\s+", count);
+
+        if (rest.isEmpty() || args.length < count) {
+            throw new IllegalArgumentException("usage: " + usage);
+        }
+        return args;
+    }
+
+    /**
+     * Find the servers a command applies to
+     * @param name name of a server, or * for every server
+     * @return the matching servers
+     */
+    private List<Session> select(String name) {
+        synchronized (sessions) {
+            if (name.equals("*")) {
+                return new ArrayList<>(sessions.values());
+            }
+
+            Session session = sessions.get(name);
+            if (session == null) {
+                throw new IllegalArgumentException("No server called " + name);
+            }
+
+            return List.of(session);
+        }
+    }
+
+    /**
+     * Connect to a new server
+     * @param name name the server is known by in commands
+     * @param host host of the server
+     * @param port port of the server
+     * @param nickname nickname to register with
+     */
+    private void connect(String name, String host, int port, String nickname) {
+        synchronized (sessions) {
+            if (sessions.containsKey(name)) {
+                throw new IllegalArgumentException("Already have a server called " + name);
+            }
+        }
+
+        ServerModel model = new ServerModel(host, port, nickname);
+        Session session = new Session(name, model);
+        model.addServerListener(session);
+        model.addTargetListener(session);
+
+        synchronized (sessions) {
+            sessions.put(name, session);
+        }
+
+        // Connections are made in the background, so hundreds can be opened at once
+        session.ready = model.connect();
+    }
+
+    /**
+     * Run an action on a server once it is connected, reporting if it fails
+     * @param session the server
+     * @param action the action, returning a future for its result
+     */
+    private void whenReady(Session session, Supplier<CompletableFuture<?>> action) {
+        session.ready.thenCompose(v -> action.get()).exceptionally(e -> {
+            log(session.name + " error: " + (e.getCause() != null ? e.getCause().getMessage() : e.getMessage()));
+            return null;
+        });
+    }
+
+    /**
+     * Forward every message received in a target to a target on another server
+     * @param fromName name of the server to forward from
+     * @param fromTarget target to forward from (e.g #lobby)
+     * @param toName name of the server to forward to
+     * @param toTarget target to forward to
+     */
+    private void relay(String fromName, String fromTarget, String toName, String toTarget) {
+        List<Session> destinations = select(toName);
+
+        for (Session from : select(fromName)) {
+            for (Session to : destinations) {
+                // Never forward a server's messages back to itself
+                if (to == from) {
+                    continue;
+                }
+
+                from.relays.computeIfAbsent(fromTarget, k -> new CopyOnWriteArrayList<>()).add(text -> {
+                    to.model.sendMessage(toTarget, text);
+                    relayed.incrementAndGet();
+                });
+            }
+        }
+    }
+
+    /**
+     * Print the state of each server, the message counts and the latency of each stage messages pass through
+     */
+    private void printStatus() {
+        int ready = 0;
+
+        for (Session session : select("*")) {
+            ConnectionState state = session.model.getState();
+            if (state == ConnectionState.READY) {
+                ready++;
+            }
+
+            out.println(session.name + " " + state.toString().toLowerCase() + ", " + session.received.get() + " messages received, "
+                + session.model.getTargets().size() + " targets, latency " + session.model.getLatency());
+        }
+
+        out.println(ready + "/" + sessions.size() + " servers ready, " + received.get() + " messages received, " + relayed.get() + " relayed");
+        out.println("Message latency:" + System.lineSeparator() + PipelineLatency.shared());
+    }
+
+    /**
+     * Disconnect from every server and let the client exit
+     */
+    public void quit() {
+        List<CompletableFuture<Void>> disconnects = new ArrayList<>();
+        for (Session session : select("*")) {
+            disconnects.add(session.model.disconnect());
+        }
+
+        // Give the servers a moment to see each QUIT, without waiting forever on one that stopped answering
+        try {
+            CompletableFuture.allOf(disconnects.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log("Some servers did not disconnect cleanly: " + e.getMessage());
+        }
+
+        quit.countDown();
+    }
+
+    /**
+     * Wait until the quit command has run
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitQuit() throws InterruptedException {
+        quit.await();
+    }
+
+    /**
+     * Log a line
+     * @param line the line to log
+     */
+    private void log(String line) {
+        out.println(line);
+    }
+
+    /**
+     * Run commands from a reader until it ends or the quit command runs
+     * @param reader the commands, one per line
+     * @return false if the quit command ran, true if the commands ran out
+     * @throws IOException if the commands can't be read
+     */
+    public boolean run(BufferedReader reader) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!execute(line)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Main method for the headless client
+     * @param args --config <file> to run commands from a file first, --log <file> to log there instead of stdout,
+     *             --no-stdin to not read commands from stdin, --execution-mode=platform or --execution-mode=virtual
+     * @throws Exception if the config file can't be read
+     */
+    public static void main(String[] args) throws Exception {
+        String config = null;
+        String logFile = null;
+        boolean readStdin = true;
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].startsWith("--execution-mode=")) {
+                // Choose the kind of threads for background work before anything creates them
+                ExecutionMode.select(ExecutionMode.parse(args[i].substring("--execution-mode=".length())));
+            } else if (args[i].equals("--config") && i + 1 < args.length) {
+                config = args[++i];
+            } else if (args[i].equals("--log") && i + 1 < args.length) {
+                logFile = args[++i];
+            } else if (args[i].equals("--no-stdin")) {
+                readStdin = false;
+            }
+        }
+
+        // Keep history in memory and unindexed unless asked for, before anything reads the settings
+        if (System.getProperty("chatclient.storeDir") == null) {
+            System.setProperty("chatclient.storeDir", "");
+        }
+        if (System.getProperty("chatclient.search") == null) {
+            System.setProperty("chatclient.search", "false");
+        }
+
+        PrintStream out = logFile == null ? System.out : new PrintStream(new FileOutputStream(logFile, true), true, StandardCharsets.UTF_8);
+        HeadlessClient client = new HeadlessClient(out);
+
+        // One hook disconnects every server on exit (e.g on Ctrl+C), however many were spawned
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (client.quit.getCount() > 0) {
+                client.quit();
+            }
+        }));
+
+        // Run the config file first, e.g to connect and join channels
+        if (config != null) {
+            try (BufferedReader reader = Files.newBufferedReader(Paths.get(config), StandardCharsets.UTF_8)) {
+                if (!client.run(reader)) {
+                    System.exit(0);
+                }
+            }
+        }
+
+        // Then take commands from stdin, e.g typed by an operator or piped from a script
+        if (readStdin) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+
+            // Without a config file there is nothing left to do once stdin ends
+            if (client.run(reader) && config == null) {
+                client.quit();
+            }
+        }
+
+        // Keep running (e.g as a relay) until told to quit
+        client.awaitQuit();
+        System.exit(0);
+    }
+}
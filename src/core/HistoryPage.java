@@ -0,0 +1,55 @@
+import java.util.List;
+
+/**
+ * A run of consecutive messages from a target's history, and where it sits among the messages stored on disk
+ * Positions are offsets into the target's MessageStore, so a page older than this one can be asked for from its start
+ */
+public class HistoryPage {
+    private List<Message> messages;
+    private long start;
+    private long end;
+
+    /**
+     * Constructor for HistoryPage
+     * @param messages the messages, oldest first
+     * @param start position in the store of the messages just older than this page
+     * @param end position in the store the page is up to date with
+     */
+    public HistoryPage(List<Message> messages, long start, long end) {
+        this.messages = messages;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Getter for the messages
+     * @return the messages in the page, oldest first
+     */
+    public List<Message> getMessages() {
+        return messages;
+    }
+
+    /**
+     * Getter for where the page starts, to ask for the page before it
+     * @return position in the store of the messages just older than this page
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Getter for where the page ends, to ask for messages let go from memory since it was read
+     * @return position in the store the page is up to date with
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * Check if there are older messages on disk
+     * @return true if messages older than this page are stored, false otherwise
+     */
+    public boolean hasOlder() {
+        return start > 0;
+    }
+}
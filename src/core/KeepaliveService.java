@@ -0,0 +1,74 @@
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps every ready connection alive by pinging it when idle, from one shared task
+ * Each tick asks each registered server to check its own idle time, so servers cost no threads or timers of their own
+ */
+public class KeepaliveService {
+    // How often registered servers are checked
+    private static final long TICK_MILLIS = 1000;
+
+    // Service shared by every server model, created on first use
+    private static KeepaliveService shared;
+
+    // Servers with a ready connection
+    private CopyOnWriteArraySet<ServerModel> models = new CopyOnWriteArraySet<>();
+    // Periodic check, while any server is registered
+    private ScheduledFuture<?> tickTask;
+
+    /**
+     * Getter for the shared keepalive service
+     * @return keepalive service shared by all server models
+     */
+    public static synchronized KeepaliveService shared() {
+        if (shared == null) {
+            shared = new KeepaliveService();
+        }
+
+        return shared;
+    }
+
+    /**
+     * Start keeping a server's connection alive
+     * @param model the server, whose connection is ready
+     */
+    public synchronized void register(ServerModel model) {
+        models.add(model);
+
+        // Only tick while there is something to check
+        if (tickTask == null) {
+            tickTask = ClientExecutors.scheduler().scheduleWithFixedDelay(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop keeping a server's connection alive (e.g because it closed)
+     * @param model the server
+     */
+    public synchronized void unregister(ServerModel model) {
+        models.remove(model);
+
+        if (models.isEmpty() && tickTask != null) {
+            tickTask.cancel(false);
+            tickTask = null;
+        }
+    }
+
+    /**
+     * Check every registered server once
+     */
+    private void tick() {
+        long nowNanos = System.nanoTime();
+
+        for (ServerModel model : models) {
+            // One broken server must not stop the others being checked
+            try {
+                model.checkKeepalive(nowNanos);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
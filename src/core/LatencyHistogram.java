@@ -0,0 +1,144 @@
+import java.time.Duration;
+
+/**
+ * Histogram of latencies, for percentiles without keeping every sample
+ * Buckets are log-linear in microseconds: exact below 16us, then 16 buckets per power of two,
+ * so any percentile is within about 6% of the true value
+ */
+public class LatencyHistogram {
+    // Number of buckets per power of two, as a power of two
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Enough buckets for any positive long
+    private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    // Number of samples in each bucket
+    private long[] counts = new long[BUCKETS];
+    // Total number of samples
+    private long count;
+    // Largest sample, in microseconds
+    private long maxMicros;
+    // Sum of all samples, in microseconds, for the mean
+    private long totalMicros;
+
+    /**
+     * Record a latency
+     * @param nanos the latency in nanoseconds
+     */
+    public synchronized void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+
+        counts[bucketOf(micros)]++;
+        count++;
+        totalMicros += micros;
+        maxMicros = Math.max(maxMicros, micros);
+    }
+
+    /**
+     * Get the latency below which a percentage of samples fall
+     * @param percentile the percentage, between 0 and 100 (e.g 99 for p99)
+     * @return the latency, or zero if nothing has been recorded
+     */
+    public synchronized Duration getPercentile(double percentile) {
+        if (count == 0) {
+            return Duration.ZERO;
+        }
+
+        // Walk the buckets until enough samples have been passed
+        long wanted = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= wanted) {
+                // Top of the bucket, but never more than the largest sample
+                return Duration.ofNanos(Math.min(upperBoundOf(i), maxMicros) * 1000);
+            }
+        }
+
+        return getMax();
+    }
+
+    /**
+     * Get the median latency
+     * @return p50 latency
+     */
+    public Duration getMedian() {
+        return getPercentile(50);
+    }
+
+    /**
+     * Get the largest latency recorded
+     * @return largest latency, or zero if nothing has been recorded
+     */
+    public synchronized Duration getMax() {
+        return Duration.ofNanos(maxMicros * 1000);
+    }
+
+    /**
+     * Get the mean latency
+     * @return mean latency, or zero if nothing has been recorded
+     */
+    public synchronized Duration getMean() {
+        return count == 0 ? Duration.ZERO : Duration.ofNanos(totalMicros / count * 1000);
+    }
+
+    /**
+     * Get the number of latencies recorded
+     * @return number of samples
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Forget every recorded latency
+     */
+    public synchronized void reset() {
+        counts = new long[BUCKETS];
+        count = 0;
+        maxMicros = 0;
+        totalMicros = 0;
+    }
+
+    /**
+     * Summarise the histogram for display
+     * @return p50, p99 and max in milliseconds
+     */
+    public String toString() {
+        return String.format("p50=%.2fms p99=%.2fms max=%.2fms (n=%d)",
+            getPercentile(50).toNanos() / 1e6, getPercentile(99).toNanos() / 1e6, getMax().toNanos() / 1e6, getCount());
+    }
+
+    /**
+     * Find the bucket a value belongs in
+     * @param micros the value in microseconds
+     * @return index of the bucket
+     */
+    private static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+
+        // Power of two the value falls in, then which slice of that power it falls in
+        int magnitude = 63 - Long.numberOfLeadingZeros(micros);
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int subBucket = (int) (micros >>> shift) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Find the largest value that belongs in a bucket
+     * @param bucket index of the bucket
+     * @return the largest value in microseconds
+     */
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        long lower = (long) (SUB_BUCKETS + subBucket) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
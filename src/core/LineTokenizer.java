@@ -0,0 +1,237 @@
+/**
+ * Cursor-based tokenizer for lines from the server
+ * Records where the prefix, command, target and trailing parameter are as offsets into the line,
+ * and only creates Strings for the parts a handler actually asks for
+ *
+ * Notifications look like ":prefix COMMAND target :trailing"
+ * Replies look like "COMMAND :content"
+ */
+public class LineTokenizer {
+    // Line being tokenized, only valid until the next call to tokenize
+    private char[] line;
+    private int length;
+
+    // Start (inclusive) and end (exclusive) of each part, or -1 if the part is missing
+    private int prefixStart;
+    private int prefixEnd;
+    private int commandStart;
+    private int commandEnd;
+    // Hash of the command, computed the same way as String.hashCode
+    private int commandHash;
+    private int targetStart;
+    private int targetEnd;
+    private int trailingStart;
+    // Start of everything after the command
+    private int restStart;
+
+    /**
+     * Tokenize a new line, replacing the previous one
+     * @param line characters of the line, without a terminator
+     * @param length number of characters in the line
+     */
+    public void tokenize(char[] line, int length) {
+        this.line = line;
+        this.length = length;
+
+        prefixStart = prefixEnd = -1;
+        targetStart = targetEnd = -1;
+        trailingStart = -1;
+
+        int cursor = 0;
+
+        // Notifications start with a prefix naming who caused them
+        if (length > 0 && line[0] == ':') {
+            prefixStart = 1;
+            prefixEnd = indexOfSpace(prefixStart);
+            cursor = skipSpaces(prefixEnd);
+        }
+
+        // Hash the command while scanning it, so it can be looked up without creating a String
+        commandStart = cursor;
+        commandHash = 0;
+        while (cursor < length && line[cursor] != ' ') {
+            commandHash = 31 * commandHash + line[cursor];
+            cursor++;
+        }
+        commandEnd = cursor;
+        restStart = skipSpaces(commandEnd);
+
+        // Notifications name a target after the command, followed by an optional trailing parameter
+        if (hasPrefix() && restStart < length) {
+            targetStart = restStart;
+            targetEnd = indexOfSpace(targetStart);
+            trailingStart = skipSpaces(targetEnd);
+
+            // Drop the colon marking the start of the trailing parameter
+            if (trailingStart < length && line[trailingStart] == ':') {
+                trailingStart++;
+            }
+        }
+    }
+
+    /**
+     * Check if the line has a prefix (i.e it is a notification rather than a reply)
+     * @return true if the line has a prefix, false otherwise
+     */
+    public boolean hasPrefix() {
+        return prefixStart != -1;
+    }
+
+    /**
+     * Get the prefix of the line without its colon (i.e the nickname of the user who caused it)
+     * @return the prefix, or an empty string if there is none
+     */
+    public String prefix() {
+        return hasPrefix() ? new String(line, prefixStart, prefixEnd - prefixStart) : "";
+    }
+
+    /**
+     * Compare the prefix against a string without creating a new String
+     * @param value the string to compare against
+     * @return true if the prefix equals the string, false otherwise
+     */
+    public boolean prefixEquals(String value) {
+        return hasPrefix() && regionEquals(prefixStart, prefixEnd, value);
+    }
+
+    /**
+     * Get the command of the line (e.g PRIVMSG or REPLY_NAMES)
+     * @return the command
+     */
+    public String command() {
+        return new String(line, commandStart, commandEnd - commandStart);
+    }
+
+    /**
+     * Get the hash of the command, equal to command().hashCode() but without creating a String
+     * @return hash of the command
+     */
+    public int commandHash() {
+        return commandHash;
+    }
+
+    /**
+     * Compare the command against a string without creating a new String
+     * @param value the string to compare against
+     * @return true if the command equals the string, false otherwise
+     */
+    public boolean commandEquals(String value) {
+        return regionEquals(commandStart, commandEnd, value);
+    }
+
+    /**
+     * Get the target of a notification (e.g the channel a user joined)
+     * @return the target, or an empty string if there is none
+     */
+    public String target() {
+        return targetStart == -1 ? "" : new String(line, targetStart, targetEnd - targetStart);
+    }
+
+    /**
+     * Get the trailing parameter of a notification without its colon (e.g the content of a PRIVMSG)
+     * @return the trailing parameter, or an empty string if there is none
+     */
+    public String trailing() {
+        if (trailingStart == -1 || trailingStart >= length) {
+            return "";
+        }
+
+        return new String(line, trailingStart, length - trailingStart);
+    }
+
+    /**
+     * Get the content of a reply: everything after the command, with its first colon removed and trimmed
+     * @return the content of the reply
+     */
+    public String content() {
+        int start = restStart;
+        int end = length;
+
+        // Find the first colon after the command
+        int colon = -1;
+        for (int i = start; i < end; i++) {
+            if (line[i] == ':') {
+                colon = i;
+                break;
+            }
+        }
+
+        // Usual case: the colon leads the content, so it can be skipped over
+        if (colon == start) {
+            start++;
+            colon = -1;
+        }
+
+        // Trim whitespace from both ends
+        while (start < end && line[start] <= ' ') {
+            start++;
+        }
+        while (end > start && line[end - 1] <= ' ') {
+            end--;
+        }
+
+        // Rare case: the colon is in the middle of the content, so it has to be cut out
+        if (colon > start && colon < end) {
+            StringBuilder content = new StringBuilder(end - start - 1);
+            content.append(line, start, colon - start);
+            content.append(line, colon + 1, end - colon - 1);
+            return content.toString();
+        }
+
+        return new String(line, start, end - start);
+    }
+
+    /**
+     * Get the whole line (e.g for logging)
+     * @return the line as a string
+     */
+    public String toString() {
+        return new String(line, 0, length);
+    }
+
+    /**
+     * Find the next space at or after a position
+     * @param from position to search from
+     * @return position of the next space, or the end of the line if there is none
+     */
+    private int indexOfSpace(int from) {
+        int i = from;
+        while (i < length && line[i] != ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Skip over spaces at or after a position
+     * @param from position to skip from
+     * @return position of the next non-space character, or the end of the line
+     */
+    private int skipSpaces(int from) {
+        int i = from;
+        while (i < length && line[i] == ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Compare a region of the line against a string
+     * @param start start of the region (inclusive)
+     * @param end end of the region (exclusive)
+     * @param value the string to compare against
+     * @return true if the region equals the string, false otherwise
+     */
+    private boolean regionEquals(int start, int end, String value) {
+        if (end - start != value.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < value.length(); i++) {
+            if (line[start + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,18 @@
+/**
+ * What to do with an incoming line that is not valid UTF-8
+ */
+public enum MalformedInputPolicy {
+    // Decode the whole line as Latin-1 instead, which never fails and keeps every byte visible
+    LATIN_1,
+    // Keep the valid parts of the line and replace each malformed sequence with U+FFFD
+    REPLACE;
+
+    /**
+     * Getter for the policy chosen with -Dchatclient.malformedInput (latin_1 or replace)
+     * @return the configured policy, LATIN_1 if not configured
+     */
+    public static MalformedInputPolicy configured() {
+        String property = System.getProperty("chatclient.malformedInput", "latin_1");
+        return MalformedInputPolicy.valueOf(property.trim().toUpperCase());
+    }
+}
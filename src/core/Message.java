@@ -0,0 +1,306 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Arrays;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.net.NoRouteToHostException;
+import java.net.ConnectException;
+import java.net.BindException;
+import java.net.SocketException;
+import java.io.EOFException;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.regex.Pattern;
+import java.util.regex.Matcher;
+
+/**
+ * Message class to represent a single message sent in a target
+ * Messages are kept by the thousand, so each is kept compact: times are epoch milliseconds rather than date objects,
+ * names shared by many messages (sender, target and server) are interned so they are held once, and the content
+ * is held as UTF-8 bytes rather than a String
+ */
+public class Message {
+
+    // Data and metadata about the message
+    private String sender;
+    private String target;
+    private byte[] content;
+    // Times as milliseconds since the epoch, reading the local date and time as if it were UTC
+    private long serverMillis;
+    private long clientMillis;
+    private String serverString;
+
+    // How the message is shown, formatted the first time it is shown
+    private String display;
+
+    /**
+     * Constructor for a new Message
+     * @param sender the sender of the message
+     * @param target the target of the message
+     * @param messageContent the content of the message
+     * @param serverTime the time the message was sent according to server
+     * @param serverString the server the message was sent from
+     */
+    public Message(String sender, String target, String messageContent, String serverTime, String serverString) {
+        this(sender, target, messageContent, LocalDateTime.parse(serverTime), serverString);
+    }
+
+    /**
+     * Constructor for a new Message with an already known server time
+     * @param sender the sender of the message
+     * @param target the target of the message
+     * @param messageContent the content of the message
+     * @param serverTime the time the message was sent according to server (e.g estimated by ServerClock)
+     * @param serverString the server the message was sent from
+     */
+    public Message(String sender, String target, String messageContent, LocalDateTime serverTime, String serverString) {
+        this(sender, target, messageContent, toMillis(serverTime), toMillis(LocalDateTime.now()), serverString);
+    }
+
+    /**
+     * Constructor for a message received earlier (e.g read back from disk)
+     * @param sender the sender of the message
+     * @param target the target of the message
+     * @param messageContent the content of the message
+     * @param serverTime the time the message was sent according to server
+     * @param clientTime the time the client received the message
+     * @param serverString the server the message was sent from
+     */
+    public Message(String sender, String target, String messageContent, LocalDateTime serverTime, LocalDateTime clientTime, String serverString) {
+        this(sender, target, messageContent, toMillis(serverTime), toMillis(clientTime), serverString);
+    }
+
+    /**
+     * Constructor for a message with its times already in milliseconds
+     * @param sender the sender of the message
+     * @param target the target of the message
+     * @param messageContent the content of the message
+     * @param serverMillis the time the message was sent according to server, from getServerMillis
+     * @param clientMillis the time the client received the message, from getClientMillis
+     * @param serverString the server the message was sent from
+     */
+    public Message(String sender, String target, String messageContent, long serverMillis, long clientMillis, String serverString) {
+        this(sender, target, messageContent.getBytes(StandardCharsets.UTF_8), serverMillis, clientMillis, serverString);
+    }
+
+    /**
+     * Constructor for a message with its content already encoded (e.g read back from disk)
+     * @param sender the sender of the message
+     * @param target the target of the message
+     * @param content the content of the message as UTF-8, which the message keeps and must not be changed after
+     * @param serverMillis the time the message was sent according to server, from getServerMillis
+     * @param clientMillis the time the client received the message, from getClientMillis
+     * @param serverString the server the message was sent from
+     */
+    public Message(String sender, String target, byte[] content, long serverMillis, long clientMillis, String serverString) {
+        // Set the data and metadata, sharing one copy of each name between every message
+        this.sender = Names.intern(sender);
+        this.target = Names.intern(target);
+        this.content = content;
+        this.serverString = Names.intern(serverString);
+        this.serverMillis = serverMillis;
+        this.clientMillis = clientMillis;
+    }
+
+    // Number of stages a message is timed through
+    private static final int STAGE_COUNT = MessageStage.values().length;
+
+    // When the message reached each stage from the socket to the screen (from System.nanoTime), indexed by stage
+    // Only created for messages received from the server, as only they are timed
+    private long[] stageNanos;
+
+    /**
+     * Stamp the time the message reached a stage
+     * @param stage the stage reached
+     * @param nanos when it was reached, from System.nanoTime
+     * @see PipelineLatency
+     */
+    public void stamp(MessageStage stage, long nanos) {
+        if (stageNanos == null) {
+            stageNanos = new long[STAGE_COUNT];
+        }
+        stageNanos[stage.ordinal()] = nanos;
+    }
+
+    /**
+     * Getter for the time the message reached a stage
+     * @param stage the stage
+     * @return when it was reached, from System.nanoTime, or 0 if it hasn't been
+     */
+    public long getStageNanos(MessageStage stage) {
+        return stageNanos == null ? 0 : stageNanos[stage.ordinal()];
+    }
+
+    /**
+     * Forget the stage times once the message has gone through the last stage it will reach, so a message kept in a
+     * history doesn't carry its timings for the rest of its life
+     */
+    public void unstamp() {
+        stageNanos = null;
+    }
+
+    /**
+     * Check if the message is being timed through the stages (i.e it was received from the server)
+     * @return true if any stage has been stamped, false otherwise
+     */
+    public boolean isTimed() {
+        return stageNanos != null;
+    }
+
+    // Format date and time to be user friendly, shared by every message as formatters are immutable
+    private static final DateTimeFormatter USER_FRIENDLY_FORMAT = DateTimeFormatter.ofPattern("E dd-MM-yyyy HH:mm:ss");
+
+    // Most recently formatted second, as messages shown together were mostly received within the same few seconds
+    private static volatile FormattedSecond lastFormatted = new FormattedSecond(Long.MIN_VALUE, null);
+
+    /**
+     * Get a user friendly string representation of the message
+     * Formatted once, the first time it is needed, as the message panel asks for it every time it shows the message
+     * @return a string representation of the message
+     */
+    public String toString() {
+        String shown = display;
+        if (shown == null) {
+            // Return the message in the format: [clientTime] sender: messageContent
+            shown = timestamp(clientMillis) + sender + ": " + getMessage();
+            display = shown;
+        }
+        return shown;
+    }
+
+    /**
+     * Format the start of a message shown at a time, reusing the last one formatted if it was in the same second
+     * @param millis the time, from getClientMillis
+     * @return the time, formatted to be user friendly in square brackets and followed by a space
+     */
+    private static String timestamp(long millis) {
+        long second = Math.floorDiv(millis, 1000);
+
+        FormattedSecond formatted = lastFormatted;
+        if (formatted.second != second) {
+            // Format the client time to be user friendly 
+            String text = "[" + LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC).format(USER_FRIENDLY_FORMAT) + "] ";
+            formatted = new FormattedSecond(second, text);
+            lastFormatted = formatted;
+        }
+
+        return formatted.text;
+    }
+
+    /**
+     * A second and its formatted timestamp, replaced as a whole so threads never see one without the other
+     */
+    private static class FormattedSecond {
+        private final long second;
+        private final String text;
+
+        /**
+         * Constructor for FormattedSecond
+         * @param second seconds since the epoch
+         * @param text the second formatted by timestamp
+         */
+        private FormattedSecond(long second, String text) {
+            this.second = second;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Convert a local date and time to milliseconds, reading it as if it were UTC so it converts back unchanged
+     * @param time the time
+     * @return milliseconds since the epoch
+     */
+    public static long toMillis(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1000 + time.getNano() / 1_000_000;
+    }
+
+    /**
+     * Convert milliseconds from toMillis back to a local date and time
+     * @param millis milliseconds since the epoch
+     * @return the time
+     */
+    public static LocalDateTime fromMillis(long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000), Math.floorMod(millis, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    /**
+     * Getter for serverTime
+     * @return the serverTime of the message
+     */
+    public LocalDateTime getServerTime() {
+            return fromMillis(serverMillis);
+    }
+
+    /**
+     * Getter for serverTime in milliseconds, cheaper than getServerTime for comparing times
+     * @return the serverTime of the message, as from toMillis
+     */
+    public long getServerMillis() {
+        return serverMillis;
+    }
+
+    /**
+     * Getter for clientTime
+     * @return the time the client received the message
+     */
+    public LocalDateTime getClientTime() {
+        return fromMillis(clientMillis);
+    }
+
+    /**
+     * Getter for clientTime in milliseconds
+     * @return the time the client received the message, as from toMillis
+     */
+    public long getClientMillis() {
+        return clientMillis;
+    }
+
+    /**
+     * Getter for target that message was sent in
+     * @return the target of the message
+     */
+    public String getTarget() {
+    	return target;
+    }
+
+    /**
+     * Getter for server that message was sent in
+     * @return the server of the message
+     */
+    public String getServer() {
+        return serverString;
+    }
+
+    /**
+     * Getter for sender of the message
+     * @return the sender of the message
+     */
+    public String getSender() {
+        return sender;
+    }
+
+    /**
+     * Getter for the message content
+     * @return the message content
+     */
+    public String getMessage() {
+        return new String(content, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Getter for the message content as UTF-8, without decoding it (e.g to store it)
+     * @return the message content, which must not be changed
+     */
+    public byte[] getMessageBytes() {
+        return content;
+    }
+}
+
@@ -0,0 +1,447 @@
+import java.io.IOException;
+
+import java.time.LocalDateTime;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Messages of a target, kept in order of server time as they are added
+ * Messages almost always arrive in order, so adding one is usually an append, and only a message older than the newest
+ * is inserted into place (after any messages with the same time, so ties keep the order they arrived in)
+ *
+ * Every message is also appended to the target's MessageStore on disk, and only a window of the newest messages is
+ * kept in memory: once it holds too many messages (or too many bytes), the oldest are let go, and can be paged back in
+ * from the store (e.g as the user scrolls up). The window is filled from the store when the history is created
+ *
+ * One thread adds messages while any number read them: readers get read-only views that need no locking,
+ * as messages are only ever appended past the end of existing views, and an insert copies the array instead of shifting it
+ */
+public class MessageHistory {
+    // Default size of the in-memory window, in messages and in (estimated) bytes
+    private static final int DEFAULT_MAX_MESSAGES = Integer.getInteger("chatclient.historyMessages", 1000);
+    private static final long DEFAULT_MAX_BYTES = Long.getLong("chatclient.historyBytes", 1L << 20);
+
+    // Estimated heap used by a message apart from its content (the object, its content array and its slot in the window)
+    // Names are shared between messages, so aren't counted against each one
+    private static final int MESSAGE_OVERHEAD = 80;
+
+    // Capacity of a new history
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Name of the history, for errors
+    private String name;
+
+    // Messages as they are now, replaced whole by each change so readers always see a consistent history
+    // Appends share the arrays of the view before them, writing past its end where that view never reads
+    private volatile View current = new View(new Message[INITIAL_CAPACITY], new long[INITIAL_CAPACITY], 0, 0, 0);
+
+    // Most messages and bytes kept in memory before the oldest are let go
+    private int maxMessages = DEFAULT_MAX_MESSAGES;
+    private long maxBytes = DEFAULT_MAX_BYTES;
+    // Estimated bytes of the messages in memory
+    private long bytes;
+    // Flag for whether the messages in memory are in the order they are in the store, false after an out of order insert
+    private boolean storeOrder = true;
+
+    // Log every message is written to, or null if history is kept in memory only
+    private volatile MessageStore store;
+
+    /**
+     * Constructor for MessageHistory, filling the window with the newest messages in the target's store
+     * @param owner the session the target belongs to (e.g its ServerModel), so sessions never share a store
+     * @param server the server the target is on (e.g host:port)
+     * @param nickname the nickname the session uses on the server
+     * @param name name of the target
+     */
+    public MessageHistory(Object owner, String server, String nickname, String name) {
+        this.name = name;
+
+        if (!MessageStore.isEnabled()) {
+            return;
+        }
+
+        try {
+            store = MessageStore.open(owner, server, nickname, name);
+
+            // Only the records that fit in the window are read, however long the history is
+            long end = store.getEnd();
+            store.forEach(store.positionBefore(end, maxMessages), end, (position, message) -> insert(message, position));
+
+        } catch (IOException e) {
+            System.err.println("Could not open stored history of " + name + ", older messages will be dropped: " + e.getMessage());
+            store = null;
+        }
+    }
+
+    /**
+     * Setter for the size of the in-memory window, taking effect from the next message added
+     * @param maxMessages most messages to keep in memory
+     * @param maxBytes most (estimated) bytes of messages to keep in memory
+     */
+    public synchronized void setWindow(int maxMessages, long maxBytes) {
+        this.maxMessages = Math.max(1, maxMessages);
+        this.maxBytes = Math.max(1, maxBytes);
+    }
+
+    /**
+     * Add a message in order of server time and store it, letting the oldest messages go if the window is full
+     * @param message the message to add
+     * @return position of the message in the store, or -1 if it wasn't stored
+     */
+    public synchronized long add(Message message) {
+        if (store == null) {
+            insert(message, 0);
+            return -1;
+        }
+
+        try {
+            long position = store.append(message);
+            insert(message, position);
+            return position;
+
+        } catch (IOException e) {
+            System.err.println("Could not store history of " + name + ", older messages will be dropped: " + e.getMessage());
+            store = null;
+            insert(message, current.storedBefore);
+            return -1;
+        }
+    }
+
+    /**
+     * Insert a message into the window in order of server time
+     * @param message the message
+     * @param position position of the message in the store
+     */
+    private synchronized void insert(Message message, long position) {
+        View view = current;
+        Message[] messages = view.messages;
+        long[] positions = view.positions;
+        int start = view.start;
+        int count = view.size;
+        long storedBefore = count == 0 ? position : view.storedBefore;
+
+        if (count == 0 || message.getServerMillis() >= messages[start + count - 1].getServerMillis()) {
+            // Usual case: the message is the newest, so append it
+            if (start + count == messages.length) {
+                // Out of room at the end, so move into new arrays, only growing them if the window is more than half full
+                int capacity = count < messages.length / 2 ? messages.length : messages.length + (messages.length >> 1);
+                Message[] moved = new Message[capacity];
+                long[] movedPositions = new long[capacity];
+                System.arraycopy(messages, start, moved, 0, count);
+                System.arraycopy(positions, start, movedPositions, 0, count);
+                messages = moved;
+                positions = movedPositions;
+                start = 0;
+            }
+
+            messages[start + count] = message;
+            positions[start + count] = position;
+
+        } else if (storedBefore > 0 && message.getServerMillis() < messages[start].getServerMillis()) {
+            // Older than every message in memory, so it is only in the store with the older messages
+            return;
+
+        } else {
+            // Out of order: copy with the message inserted, so views of the old arrays never see messages move
+            int index = insertionPoint(messages, start, count, message.getServerMillis()) - start;
+            int capacity = Math.max(messages.length, count + 1);
+            Message[] inserted = new Message[capacity];
+            long[] insertedPositions = new long[capacity];
+            System.arraycopy(messages, start, inserted, 0, index);
+            System.arraycopy(positions, start, insertedPositions, 0, index);
+            inserted[index] = message;
+            insertedPositions[index] = position;
+            System.arraycopy(messages, start + index, inserted, index + 1, count - index);
+            System.arraycopy(positions, start + index, insertedPositions, index + 1, count - index);
+
+            messages = inserted;
+            positions = insertedPositions;
+            start = 0;
+            storeOrder = false;
+        }
+
+        count++;
+        bytes += estimateBytes(message);
+
+        // Let the oldest messages go until the window fits, always keeping the newest in memory
+        boolean evicted = false;
+        while (count > 1 && (count > maxMessages || bytes > maxBytes)) {
+            // Older views may still read the slot, so it is only cleared when the arrays are next moved
+            bytes -= estimateBytes(messages[start]);
+            start++;
+            count--;
+            evicted = true;
+        }
+
+        // Everything in the store before the oldest message still in memory has been let go, so can be paged in
+        if (evicted) {
+            storedBefore = oldestPosition(positions, start, count);
+        }
+
+        current = new View(messages, positions, start, count, storedBefore);
+    }
+
+    /**
+     * Remove every message, in memory and stored
+     */
+    public synchronized void clear() {
+        // Start new arrays, as views may still be reading the old ones
+        current = new View(new Message[INITIAL_CAPACITY], new long[INITIAL_CAPACITY], 0, 0, 0);
+        bytes = 0;
+        storeOrder = true;
+
+        if (store != null) {
+            try {
+                store.clear();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Stop storing messages and close the store (e.g once the target is removed), keeping the messages in memory
+     * Messages added afterwards are kept in memory only, and stored messages can no longer be read back in
+     */
+    public synchronized void close() {
+        MessageStore file = store;
+        if (file == null) {
+            return;
+        }
+        store = null;
+
+        try {
+            file.close();
+        } catch (IOException e) {
+            System.err.println("Could not close stored history of " + name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Get the number of messages in memory
+     * @return number of messages in the window
+     */
+    public int size() {
+        return current.size;
+    }
+
+    /**
+     * Get the newest message by server time
+     * @return the newest message, or null if there are none
+     */
+    public Message last() {
+        View view = current;
+        return view.size == 0 ? null : view.messages[view.start + view.size - 1];
+    }
+
+    /**
+     * Get a read-only view of the messages in memory as they are now, in order of server time
+     * The view doesn't change as messages are added, and costs nothing to make
+     * @return the messages
+     */
+    public List<Message> view() {
+        return current;
+    }
+
+    /**
+     * Get the messages in memory as a page, from which older pages can be read
+     * @return the messages in memory, starting where the stored messages that were let go end
+     */
+    public HistoryPage latestPage() {
+        View view = current;
+        return new HistoryPage(view, view.storedBefore, view.storedBefore);
+    }
+
+    /**
+     * Read stored messages older than a page back in
+     * @param before start of the page to read the messages before
+     * @param count most messages to read
+     * @return the messages, as a page that starts where they do
+     */
+    public HistoryPage olderPage(long before, int count) {
+        MessageStore file = store;
+        if (file == null) {
+            return new HistoryPage(List.of(), 0, before);
+        }
+        return file.readBefore(before, count);
+    }
+
+    /**
+     * Read stored messages between two positions back in (e.g those let go since a page was read)
+     * @param from position to start from, the end of a page
+     * @param to position to stop at, the end of a later page
+     * @return the messages, in the order they were stored
+     */
+    public List<Message> storedBetween(long from, long to) {
+        MessageStore file = store;
+        if (file == null || from >= to) {
+            return List.of();
+        }
+        return file.readBetween(from, to);
+    }
+
+    /**
+     * Get where messages are stored up to
+     * @return end of the store, or 0 if messages aren't stored
+     */
+    public long storedEnd() {
+        MessageStore file = store;
+        return file == null ? 0 : file.getEnd();
+    }
+
+    /**
+     * Get what identifies the store, which every history of the same target shares
+     * @return the store's directory, or null if messages aren't stored
+     */
+    public String storeKey() {
+        MessageStore file = store;
+        return file == null ? null : file.getDirectory().toString();
+    }
+
+    /**
+     * Read a single stored message back in
+     * @param position position of the message in the store
+     * @return the message, or null if messages aren't stored
+     */
+    public Message storedMessage(long position) {
+        MessageStore file = store;
+        return file == null ? null : file.read(position);
+    }
+
+    /**
+     * Read at most a number of stored messages between two positions in the order they were stored
+     * @param from position to start from
+     * @param to position to stop at
+     * @param count most messages to read
+     * @param visitor callback for each message and its position
+     * @return position to carry on from, or the position to stop at if messages aren't stored
+     */
+    public long forEachStored(long from, long to, int count, MessageStore.RecordVisitor visitor) {
+        MessageStore file = store;
+        return file == null ? to : file.forEach(from, to, count, visitor);
+    }
+
+    /**
+     * Read a page of stored messages from a time on, found with the store's time index
+     * @param time time to start from
+     * @param count most messages to read
+     * @return the messages, as a page starting at the first not older than the time
+     */
+    public HistoryPage pageFrom(LocalDateTime time, int count) {
+        MessageStore file = store;
+        if (file == null) {
+            return new HistoryPage(List.of(), 0, 0);
+        }
+
+        return file.readFrom(file.positionOf(time), count);
+    }
+
+    /**
+     * Find the store position of the oldest stored message in the window
+     * @param positions store positions of the messages in the window
+     * @param start index of the first message
+     * @param count number of messages
+     * @return lowest position in the window
+     */
+    private long oldestPosition(long[] positions, int start, int count) {
+        // Usual case: messages arrived in order, so the oldest in memory was also stored first
+        if (storeOrder) {
+            return positions[start];
+        }
+
+        // A message arrived out of order, so look for the lowest and check if order has been restored
+        long lowest = positions[start];
+        boolean ordered = true;
+        for (int i = start + 1; i < start + count; i++) {
+            lowest = Math.min(lowest, positions[i]);
+            ordered &= positions[i] >= positions[i - 1];
+        }
+        storeOrder = ordered;
+
+        return lowest;
+    }
+
+    /**
+     * Estimate the heap used by a message
+     * @param message the message
+     * @return estimated bytes
+     */
+    private static long estimateBytes(Message message) {
+        return MESSAGE_OVERHEAD + message.getMessageBytes().length;
+    }
+
+    /**
+     * Find where a message belongs, after every message with the same or an earlier time
+     * @param messages messages in order of server time
+     * @param start index of the first message
+     * @param count number of messages
+     * @param time server time of the message, from Message.getServerMillis
+     * @return index to insert the message at
+     */
+    private static int insertionPoint(Message[] messages, int start, int count, long time) {
+        int low = start;
+        int high = start + count;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (time < messages[middle].getServerMillis()) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Read-only list over a run of messages in an array
+     */
+    private static class View extends AbstractList<Message> implements RandomAccess {
+        private final Message[] messages;
+        // Store position of each message, alongside it
+        private final long[] positions;
+        private final int start;
+        private final int size;
+        // Position in the store before which every message has been let go from memory
+        private final long storedBefore;
+
+        /**
+         * Constructor for View
+         * @param messages array holding the messages
+         * @param positions array holding the store position of each message
+         * @param start index of the first message in the view
+         * @param size number of messages in the view
+         * @param storedBefore position in the store before which no message is in the view
+         */
+        private View(Message[] messages, long[] positions, int start, int size, long storedBefore) {
+            this.messages = messages;
+            this.positions = positions;
+            this.start = start;
+            this.size = size;
+            this.storedBefore = storedBefore;
+        }
+
+        /**
+         * Get a message
+         * @param index position of the message, oldest first
+         * @return the message
+         */
+        public Message get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+            }
+            return messages[start + index];
+        }
+
+        /**
+         * Get the number of messages
+         * @return number of messages in the view
+         */
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * Stages an inbound message passes through on its way from the socket to the screen, in order
+ */
+public enum MessageStage {
+    // Bytes holding the message were read from the socket
+    RECEIVED,
+    // Line was tokenized and a Message created from it
+    PARSED,
+    // Message was added to its target's history
+    STORED,
+    // Message reached the UI's listener, off the event loop
+    DISPATCHED,
+    // Message was appended to the message history on the EDT
+    APPENDED,
+    // Message history was painted with the message in it
+    PAINTED
+}
@@ -0,0 +1,813 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+import java.net.URLEncoder;
+
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Append-only log of every message added to a target, kept on disk so history outlives the client
+ * The log is split into segments that are memory-mapped, so appending a message is a copy into memory, and reading
+ * a page decodes only the messages on it rather than the whole file
+ * Each segment keeps a sparse index of times, so the messages from a given time are found by binary search
+ *
+ * Each record is framed by its length at both ends, so the log can be read backwards as well as forwards
+ * Positions are offsets into the log as a whole, so they carry on across segments
+ *
+ * A log belongs to one session (a server and the nickname used on it), and only one session writes to it at once:
+ * within the client, other sessions are refused the log, and other processes are kept out by a lock on its directory
+ */
+public class MessageStore implements Closeable {
+    // Directory logs are kept in, with a directory per server, nickname and target; empty to keep history in memory only
+    private static final String DIRECTORY = System.getProperty("chatclient.storeDir",
+        Paths.get(System.getProperty("user.home"), ".chatclient", "history").toString());
+
+    // Most bytes in a segment before the next is started
+    private static final int SEGMENT_SIZE = Integer.getInteger("chatclient.segmentBytes", 16 << 20);
+    // Bytes of records between entries in a segment's time index
+    private static final int INDEX_INTERVAL = 4096;
+    // Bytes of an index entry: newest time before a position, and the position
+    private static final int INDEX_ENTRY = 2 * Long.BYTES;
+    // Bytes framing each record: its length before and after it
+    private static final int FRAME = 2 * Integer.BYTES;
+    // Bytes of the times at the start of a record
+    private static final int TIMES = 2 * (Long.BYTES + Integer.BYTES);
+
+    // Zeros to wipe segments with
+    private static final byte[] ZEROS = new byte[INDEX_INTERVAL];
+
+    // Logs already open, so targets of one session with the same name (e.g a channel parted and joined again) share one
+    private static final Map<Path, MessageStore> OPEN = new HashMap<>();
+
+    /**
+     * Callback for each record read by forEach
+     */
+    public interface RecordVisitor {
+        /**
+         * Visit a record
+         * @param position position of the record
+         * @param message the message in the record
+         */
+        void visit(long position, Message message);
+    }
+
+    // Directory holding the log's segments
+    private Path directory;
+    // Lock on the directory, held while the log is open so no other process writes to it
+    private FileChannel lockChannel;
+    private FileLock lock;
+    // Session the log is open for, and how many of its targets have it open
+    private Object owner;
+    private int users;
+    // Flag set once the log is closed, after which nothing more is appended
+    private boolean closed;
+    // Segments by the position of their first record
+    private TreeMap<Long, Segment> segments = new TreeMap<>();
+    // Newest segment, the one appended to
+    private Segment active;
+
+    // Target and server of the last message appended and their encodings, which almost every message shares
+    private String lastTarget = "";
+    private byte[] lastTargetBytes = new byte[0];
+    private String lastServer = "";
+    private byte[] lastServerBytes = new byte[0];
+
+    /**
+     * Check if history is kept on disk
+     * @return true unless the store directory was set to empty
+     */
+    public static boolean isEnabled() {
+        return !DIRECTORY.isEmpty();
+    }
+
+    /**
+     * Open the log of a target, creating it if there is none
+     * Each call must be matched by a call to close once the target is done with the log
+     * @param owner the session opening the log (e.g its ServerModel), the only one allowed to use it until it is closed
+     * @param server the server the target is on (e.g host:port)
+     * @param nickname the nickname the session uses on the server
+     * @param target name of the target
+     * @return the log, shared with the session's other targets of the same name
+     * @throws IOException if the log can't be opened or created, or another session or process has it open
+     */
+    public static synchronized MessageStore open(Object owner, String server, String nickname, String target) throws IOException {
+        Path directory = Paths.get(DIRECTORY, encode(server), encode(nickname), encode(target)).toAbsolutePath();
+
+        MessageStore store = OPEN.get(directory);
+        if (store == null) {
+            store = new MessageStore(directory, owner);
+            OPEN.put(directory, store);
+        } else if (store.owner != owner) {
+            throw new IOException("History in " + directory + " is already open for another session");
+        }
+
+        store.users++;
+        return store;
+    }
+
+    /**
+     * Constructor for MessageStore, locking a directory and opening every segment in it
+     * @param directory directory holding the log's segments
+     * @param owner the session the log is open for
+     * @throws IOException if the segments can't be opened, or another process has the directory locked
+     */
+    private MessageStore(Path directory, Object owner) throws IOException {
+        this.directory = directory;
+        this.owner = owner;
+        Files.createDirectories(directory);
+
+        // Two processes appending to the same mapped segment would write over each other's records
+        lockChannel = FileChannel.open(directory.resolve("lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Already locked by this client, through a log that hasn't finished closing
+            lock = null;
+        }
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException("History in " + directory + " is in use by another client");
+        }
+
+        try {
+            openSegments();
+        } catch (IOException e) {
+            closeSegments();
+            throw e;
+        }
+    }
+
+    /**
+     * Open every segment in the directory, or start the first if there are none
+     * @throws IOException if the segments can't be opened
+     */
+    private void openSegments() throws IOException {
+        // Segments are named by the position of their first record
+        List<Long> bases = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.log")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                bases.add(Long.parseLong(name.substring(0, name.length() - ".log".length())));
+            }
+        }
+        Collections.sort(bases);
+
+        // Only the newest segment is written to, the rest were sealed when it was started
+        for (int i = 0; i < bases.size(); i++) {
+            Segment segment = Segment.open(directory, bases.get(i), i == bases.size() - 1);
+            segments.put(segment.base, segment);
+        }
+
+        if (segments.isEmpty()) {
+            segments.put(0L, Segment.open(directory, 0, true));
+        }
+        active = segments.lastEntry().getValue();
+    }
+
+    /**
+     * Append a message
+     * @param message the message
+     * @return position of the message's record
+     * @throws IOException if the message can't be written
+     */
+    public synchronized long append(Message message) throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+
+        // Only encode the target and server again if they changed
+        if (!lastTarget.equals(message.getTarget())) {
+            lastTarget = message.getTarget();
+            lastTargetBytes = bytes(lastTarget);
+        }
+        if (!lastServer.equals(message.getServer())) {
+            lastServer = message.getServer();
+            lastServerBytes = bytes(lastServer);
+        }
+
+        byte[][] strings = { bytes(message.getSender()), lastTargetBytes, message.getMessageBytes(), lastServerBytes };
+
+        // Times, then each string with its length
+        int length = TIMES;
+        for (byte[] string : strings) {
+            length += Integer.BYTES + string.length;
+        }
+        if (FRAME + length > SEGMENT_SIZE) {
+            throw new IOException("Message too large to store: " + length + " bytes");
+        }
+
+        // Start a new segment once this one is full
+        if (active.size + FRAME + length > active.log.capacity()) {
+            active.seal();
+            active = Segment.open(directory, active.base + active.size, true);
+            segments.put(active.base, active);
+        }
+
+        MappedByteBuffer log = active.log;
+        int offset = active.size;
+        int at = offset;
+
+        log.putInt(at, length);
+        at += Integer.BYTES;
+        at = putTime(log, at, message.getServerMillis());
+        at = putTime(log, at, message.getClientMillis());
+        for (byte[] string : strings) {
+            log.putInt(at, string.length);
+            log.put(at + Integer.BYTES, string);
+            at += Integer.BYTES + string.length;
+        }
+        log.putInt(at, length);
+
+        active.size = at + Integer.BYTES;
+        active.maxTime = Math.max(active.maxTime, message.getServerMillis() * 1_000_000L);
+        active.indexTo(active.size);
+
+        return active.base + offset;
+    }
+
+    /**
+     * Getter for the end of the log
+     * @return position after the newest record
+     */
+    public synchronized long getEnd() {
+        return active.base + active.size;
+    }
+
+    /**
+     * Getter for the directory holding the log, which identifies it
+     * @return the log's directory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Find the position a number of records before another, without reading the messages
+     * @param position a record boundary
+     * @param count number of records to step back over
+     * @return position of the earliest record stepped over, or 0 if there are fewer records than that
+     */
+    public synchronized long positionBefore(long position, int count) {
+        for (int i = 0; i < count && position > 0; i++) {
+            Segment segment = segments.floorEntry(position - 1).getValue();
+            int offset = (int) (position - segment.base);
+            position -= FRAME + segment.log.getInt(offset - Integer.BYTES);
+        }
+
+        return position;
+    }
+
+    /**
+     * Find where the messages from a time start, by binary search of the time index
+     * Every message before the position is older than the time, and the message at it is not
+     * @param time the time
+     * @return position of the first record not older than the time, or the end of the log if there is none
+     */
+    public synchronized long positionOf(LocalDateTime time) {
+        long key = timeKey(time);
+
+        // Each segment knows the newest time in it, so skip those that are older throughout
+        for (Segment segment : segments.values()) {
+            if (segment.maxTime >= key) {
+                return segment.base + segment.positionOf(key);
+            }
+        }
+
+        return getEnd();
+    }
+
+    /**
+     * Read the messages just before a position, e.g to page in the messages older than those on screen
+     * @param position a record boundary
+     * @param count most messages to read
+     * @return the messages oldest first, as a page from the position of the oldest message read to the given position
+     */
+    public synchronized HistoryPage readBefore(long position, int count) {
+        List<Message> messages = new ArrayList<>();
+        long start = position;
+
+        // Step back over one record at a time using the length at its end
+        while (start > 0 && messages.size() < count) {
+            Segment segment = segments.floorEntry(start - 1).getValue();
+            int offset = (int) (start - segment.base);
+            offset -= FRAME + segment.log.getInt(offset - Integer.BYTES);
+
+            messages.add(segment.read(offset));
+            start = segment.base + offset;
+        }
+
+        Collections.reverse(messages);
+        return new HistoryPage(messages, start, position);
+    }
+
+    /**
+     * Read a single message
+     * @param position position of the message's record
+     * @return the message
+     */
+    public synchronized Message read(long position) {
+        Segment segment = segments.floorEntry(position).getValue();
+        return segment.read((int) (position - segment.base));
+    }
+
+    /**
+     * Read the messages from a position on, e.g from a position found by time
+     * @param position a record boundary
+     * @param count most messages to read
+     * @return the messages oldest first, as a page from the given position to the end of the newest message read
+     */
+    public synchronized HistoryPage readFrom(long position, int count) {
+        List<Message> messages = new ArrayList<>();
+        long end = position;
+        long storeEnd = getEnd();
+
+        while (end < storeEnd && messages.size() < count) {
+            Segment segment = segments.floorEntry(end).getValue();
+            int offset = (int) (end - segment.base);
+
+            messages.add(segment.read(offset));
+            end += FRAME + segment.log.getInt(offset);
+        }
+
+        return new HistoryPage(messages, position, end);
+    }
+
+    /**
+     * Read every message between two positions, e.g those that left memory since a page was read
+     * @param from a record boundary to start from
+     * @param to a record boundary to stop at
+     * @return the messages, oldest first
+     */
+    public synchronized List<Message> readBetween(long from, long to) {
+        List<Message> messages = new ArrayList<>();
+        forEach(from, to, (position, message) -> messages.add(message));
+        return messages;
+    }
+
+    /**
+     * Read every record between two positions in order
+     * @param from a record boundary to start from
+     * @param to a record boundary to stop at
+     * @param visitor callback for each record
+     */
+    public synchronized void forEach(long from, long to, RecordVisitor visitor) {
+        forEach(from, to, Integer.MAX_VALUE, visitor);
+    }
+
+    /**
+     * Read at most a number of records between two positions in order, e.g to work through a long log in chunks
+     * without holding the log's lock throughout
+     * @param from a record boundary to start from
+     * @param to a record boundary to stop at
+     * @param count most records to read
+     * @param visitor callback for each record
+     * @return position after the last record read, to carry on from
+     */
+    public synchronized long forEach(long from, long to, int count, RecordVisitor visitor) {
+        to = Math.min(to, getEnd());
+
+        // Step forward over one record at a time using the length at its start
+        for (int read = 0; from < to && read < count; read++) {
+            // A position at the end of a segment is also the start of the next, which floorEntry finds
+            Segment segment = segments.floorEntry(from).getValue();
+            int offset = (int) (from - segment.base);
+
+            visitor.visit(from, segment.read(offset));
+            from += FRAME + segment.log.getInt(offset);
+        }
+
+        return from;
+    }
+
+    /**
+     * Remove every message, starting the log again from position 0
+     * @throws IOException if the segments can't be removed
+     */
+    public synchronized void clear() throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+
+        // Usual case: a single segment, which is cheaper to wipe than to delete and create again
+        if (segments.size() == 1 && active.base == 0) {
+            active.wipe();
+            return;
+        }
+
+        for (Segment segment : segments.values()) {
+            segment.delete();
+        }
+        segments.clear();
+
+        active = Segment.open(directory, 0, true);
+        segments.put(0L, active);
+    }
+
+    /**
+     * Close the log once every target that opened it has closed it
+     * Closing writes the records out to disk, trims the newest segment to the records in it and releases the lock
+     * @throws IOException if the segments can't be closed
+     */
+    public void close() throws IOException {
+        synchronized (MessageStore.class) {
+            if (--users > 0) {
+                return;
+            }
+
+            // Release the lock before the log stops being open, so the next open of it in this client finds it free
+            try {
+                synchronized (this) {
+                    closeSegments();
+                }
+            } finally {
+                OPEN.remove(directory);
+            }
+        }
+    }
+
+    /**
+     * Close every segment and release the lock on the directory
+     * @throws IOException if the segments can't be closed
+     */
+    private void closeSegments() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            for (Segment segment : segments.values()) {
+                segment.close();
+            }
+        } finally {
+            lockChannel.close();
+        }
+    }
+
+    /**
+     * Encode a name so it can be used as a directory name, keeping different names apart
+     * @param name the name (e.g a server or target)
+     * @return the encoded name
+     */
+    private static String encode(String name) {
+        return URLEncoder.encode(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encode a string as UTF-8
+     * @param string the string
+     * @return its bytes
+     */
+    private static byte[] bytes(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decode a string as UTF-8
+     * @param bytes its bytes
+     * @return the string
+     */
+    private static String string(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Convert a time to a single number that orders the same way, for the time index
+     * @param time the time
+     * @return nanoseconds since the epoch
+     */
+    private static long timeKey(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + time.getNano();
+    }
+
+    /**
+     * Encode a time as seconds and nanoseconds
+     * @param log buffer to write to
+     * @param at position to write at
+     * @param millis the time, from Message.getServerMillis or getClientMillis
+     * @return position after the time
+     */
+    private static int putTime(MappedByteBuffer log, int at, long millis) {
+        log.putLong(at, Math.floorDiv(millis, 1000));
+        log.putInt(at + Long.BYTES, Math.floorMod(millis, 1000) * 1_000_000);
+        return at + Long.BYTES + Integer.BYTES;
+    }
+
+    /**
+     * Decode a time written as seconds and nanoseconds
+     * @param log buffer to read from
+     * @param at position of the time
+     * @return the time, in milliseconds as Message holds it
+     */
+    private static long getMillis(MappedByteBuffer log, int at) {
+        return log.getLong(at) * 1000 + log.getInt(at + Long.BYTES) / 1_000_000;
+    }
+
+    /**
+     * Decode a time written as seconds and nanoseconds, for the time index
+     * @param log buffer to read from
+     * @param at position of the time
+     * @return nanoseconds since the epoch, as from timeKey
+     */
+    private static long getTimeKey(MappedByteBuffer log, int at) {
+        return log.getLong(at) * 1_000_000_000L + log.getInt(at + Long.BYTES);
+    }
+
+    /**
+     * One file of the log, and its time index
+     */
+    private static class Segment {
+        // Position of the segment's first record in the log
+        private final long base;
+        private final Path logFile;
+        private final Path indexFile;
+        private FileChannel logChannel;
+        private FileChannel indexChannel;
+        private MappedByteBuffer log;
+        private MappedByteBuffer index;
+
+        // Bytes of records in the segment
+        private int size;
+        // Number of entries in the time index
+        private int indexCount;
+        // Offset of the newest index entry, 0 if there is none
+        private int indexedTo;
+        // Newest server time in the segment, as nanoseconds since the epoch
+        private long maxTime = Long.MIN_VALUE;
+
+        /**
+         * Constructor for Segment
+         * @param directory directory holding the log's segments
+         * @param base position of the segment's first record in the log
+         */
+        private Segment(Path directory, long base) {
+            this.base = base;
+            this.logFile = directory.resolve(String.format("%020d.log", base));
+            this.indexFile = directory.resolve(String.format("%020d.idx", base));
+        }
+
+        /**
+         * Open a segment, creating it if it doesn't exist, and find where its records end
+         * @param directory directory holding the log's segments
+         * @param base position of the segment's first record in the log
+         * @param writable true for the newest segment, which is mapped at full size so it can be appended to
+         * @return the segment
+         * @throws IOException if the segment can't be opened
+         */
+        private static Segment open(Path directory, long base, boolean writable) throws IOException {
+            Segment segment = new Segment(directory, base);
+
+            if (writable) {
+                StandardOpenOption[] options = { StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE };
+                segment.logChannel = FileChannel.open(segment.logFile, options);
+                segment.indexChannel = FileChannel.open(segment.indexFile, options);
+                // Mapping past the end of a file grows it, with zeros after the last record
+                segment.log = segment.logChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(SEGMENT_SIZE, segment.logChannel.size()));
+                segment.index = segment.indexChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    Math.max((long) (segment.log.capacity() / INDEX_INTERVAL + 1) * INDEX_ENTRY, segment.indexChannel.size()));
+            } else {
+                segment.logChannel = FileChannel.open(segment.logFile, StandardOpenOption.READ);
+                segment.indexChannel = FileChannel.open(segment.indexFile, StandardOpenOption.READ);
+                segment.log = segment.logChannel.map(FileChannel.MapMode.READ_ONLY, 0, segment.logChannel.size());
+                segment.index = segment.indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, segment.indexChannel.size());
+            }
+
+            segment.recover(writable);
+            return segment;
+        }
+
+        /**
+         * Find the end of the records and index, picking up from the newest index entry
+         * Only the records after that entry are read, and any record cut short (e.g by the client being killed) is wiped
+         * @param writable true if the segment can be written to, so missing index entries and cut records can be fixed
+         */
+        private void recover(boolean writable) {
+            // Entries are written in order, and a written entry's position is never 0, so count them by binary search
+            int low = 0;
+            int high = index.capacity() / INDEX_ENTRY;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (index.getLong(middle * INDEX_ENTRY + Long.BYTES) != 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            indexCount = low;
+
+            int offset = 0;
+            if (indexCount > 0) {
+                maxTime = index.getLong((indexCount - 1) * INDEX_ENTRY);
+                offset = (int) index.getLong((indexCount - 1) * INDEX_ENTRY + Long.BYTES);
+                indexedTo = offset;
+            }
+
+            // Step over the records after the newest entry, checking the length at each end matches
+            while (offset + Integer.BYTES <= log.capacity()) {
+                int length = log.getInt(offset);
+                if (length == 0) {
+                    break;
+                }
+
+                if (length < TIMES || offset + FRAME + length > log.capacity() || log.getInt(offset + Integer.BYTES + length) != length) {
+                    if (writable) {
+                        wipeRecords(offset, log.capacity());
+                    }
+                    break;
+                }
+
+                maxTime = Math.max(maxTime, getTimeKey(log, offset + Integer.BYTES));
+                offset += FRAME + length;
+                if (writable) {
+                    indexTo(offset);
+                }
+            }
+
+            size = offset;
+        }
+
+        /**
+         * Add an index entry if the records have passed the next index interval
+         * @param end end of the newest record
+         */
+        private void indexTo(int end) {
+            if (end / INDEX_INTERVAL == indexedTo / INDEX_INTERVAL) {
+                return;
+            }
+
+            addIndexEntry(end);
+        }
+
+        /**
+         * Add an index entry
+         * @param end end of the newest record, every record before which is no newer than the segment's newest time
+         */
+        private void addIndexEntry(int end) {
+            index.putLong(indexCount * INDEX_ENTRY, maxTime);
+            index.putLong(indexCount * INDEX_ENTRY + Long.BYTES, end);
+            indexCount++;
+            indexedTo = end;
+        }
+
+        /**
+         * Find where the messages from a time start within the segment
+         * @param key the time, as nanoseconds since the epoch
+         * @return offset of the first record not older than the time, or the end of the segment
+         */
+        private int positionOf(long key) {
+            // Latest entry before which every record is older than the time
+            int low = 0;
+            int high = indexCount;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (index.getLong(middle * INDEX_ENTRY) < key) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            int offset = low == 0 ? 0 : (int) index.getLong((low - 1) * INDEX_ENTRY + Long.BYTES);
+
+            // Step over the few records from there that are still older
+            while (offset < size && getTimeKey(log, offset + Integer.BYTES) < key) {
+                offset += FRAME + log.getInt(offset);
+            }
+
+            return offset;
+        }
+
+        /**
+         * Decode a record
+         * @param offset offset of the record in the segment
+         * @return the message in the record
+         */
+        private Message read(int offset) {
+            int at = offset + Integer.BYTES;
+            long serverMillis = getMillis(log, at);
+            long clientMillis = getMillis(log, at + Long.BYTES + Integer.BYTES);
+            at += TIMES;
+
+            byte[][] strings = new byte[4][];
+            for (int i = 0; i < strings.length; i++) {
+                int length = log.getInt(at);
+                strings[i] = new byte[length];
+                log.get(at + Integer.BYTES, strings[i]);
+                at += Integer.BYTES + length;
+            }
+
+            // The content is kept as it was stored, only the names are decoded
+            return new Message(string(strings[0]), string(strings[1]), strings[2], serverMillis, clientMillis, string(strings[3]));
+        }
+
+        /**
+         * Stop appending to the segment, indexing its last records and trimming its files to their contents
+         * @throws IOException if the files can't be trimmed
+         */
+        private void seal() throws IOException {
+            if (indexedTo < size) {
+                addIndexEntry(size);
+            }
+            trim();
+        }
+
+        /**
+         * Trim the segment's files to their contents, leaving it read-only
+         * Unlike sealing, no index entry is added, as the segment may be opened and appended to again (e.g on close)
+         * @throws IOException if the files can't be trimmed
+         */
+        private void trim() throws IOException {
+            log.force();
+            index.force();
+
+            // Read the records back in through a mapping of just them, so the full size writable mapping is never
+            // touched again once the files are trimmed out from under it
+            log = logChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            index = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, (long) indexCount * INDEX_ENTRY);
+
+            logChannel.truncate(size);
+            indexChannel.truncate((long) indexCount * INDEX_ENTRY);
+        }
+
+        /**
+         * Remove every record, keeping the files
+         */
+        private void wipe() {
+            wipeRecords(0, size);
+            wipeIndex();
+            size = 0;
+            maxTime = Long.MIN_VALUE;
+        }
+
+        /**
+         * Zero the records between two offsets
+         * @param from offset to start from
+         * @param to offset to stop at
+         */
+        private void wipeRecords(int from, int to) {
+            for (int at = from; at < to; at += ZEROS.length) {
+                log.put(at, ZEROS, 0, Math.min(ZEROS.length, to - at));
+            }
+        }
+
+        /**
+         * Zero every index entry
+         */
+        private void wipeIndex() {
+            int to = indexCount * INDEX_ENTRY;
+            for (int at = 0; at < to; at += ZEROS.length) {
+                index.put(at, ZEROS, 0, Math.min(ZEROS.length, to - at));
+            }
+            indexCount = 0;
+            indexedTo = 0;
+        }
+
+        /**
+         * Trim the segment's files to their contents and close them
+         * @throws IOException if the files can't be closed
+         */
+        private void close() throws IOException {
+            // Write the records out, trimming the files if they were grown to append to, so they are on disk however
+            // the client exits
+            if (logChannel.size() > size && logChannel.isOpen()) {
+                trim();
+            } else {
+                log.force();
+                index.force();
+            }
+
+            logChannel.close();
+            indexChannel.close();
+        }
+
+        /**
+         * Close and delete the segment's files
+         * @throws IOException if the files can't be deleted
+         */
+        private void delete() throws IOException {
+            logChannel.close();
+            indexChannel.close();
+            Files.deleteIfExists(logFile);
+            Files.deleteIfExists(indexFile);
+        }
+    }
+}
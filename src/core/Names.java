@@ -0,0 +1,37 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared copies of names that appear in many messages (e.g nicknames, targets and servers)
+ * Each message holding the shared copy of its names, instead of its own, means a name is held once however many
+ * messages use it
+ */
+public class Names {
+    // Most names kept, so a flood of one-off names can't grow the table without limit
+    private static final int MAX_NAMES = Integer.getInteger("chatclient.maxNames", 100_000);
+
+    // Shared copy of each name, keyed by itself
+    private static final ConcurrentHashMap<String, String> NAMES = new ConcurrentHashMap<>();
+
+    /**
+     * Get the shared copy of a name
+     * @param name the name
+     * @return an equal string shared by every caller, or the name itself if the table is full
+     */
+    public static String intern(String name) {
+        if (name == null) {
+            return null;
+        }
+
+        String shared = NAMES.get(name);
+        if (shared != null) {
+            return shared;
+        }
+
+        if (NAMES.size() >= MAX_NAMES) {
+            return name;
+        }
+
+        shared = NAMES.putIfAbsent(name, name);
+        return shared == null ? name : shared;
+    }
+}
@@ -0,0 +1,308 @@
+import java.io.IOException;
+
+import java.nio.channels.ClosedChannelException;
+
+import java.time.Duration;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded, rate limited queue of lines waiting to be written to a server
+ * Lines are queued by any thread and drained in batches by the connection's event loop,
+ * highest priority first, no faster than the token bucket allows
+ */
+public class OutboundQueue {
+    // Number of lines queued when not configured
+    public static final int DEFAULT_CAPACITY = 1024;
+    // Lines per second and burst size when not configured, kept under common server flood limits
+    public static final double DEFAULT_RATE = 10;
+    public static final int DEFAULT_BURST = 20;
+
+    /**
+     * A queued line and when it was queued
+     */
+    private static class QueuedLine {
+        private String line;
+        private long queuedNanos;
+    }
+
+    // Lines waiting to be written for each priority, oldest first
+    private List<ArrayDeque<QueuedLine>> lanes;
+    // Total lines across all priorities
+    private int size;
+    // Most lines that can be queued at once
+    private int capacity;
+    // What to do when a line is sent while the queue is full
+    private OverflowPolicy policy;
+    // Limit on how fast non-urgent lines are written
+    private TokenBucket bucket;
+    // Flag set once the connection closes, after which no more lines are accepted
+    private boolean closed;
+
+    // Lines taken off the queue and the total time they spent waiting, for average wait time
+    private long sentCount;
+    private long totalWaitNanos;
+
+    /**
+     * Constructor for an outbound queue without a rate limit
+     * @param capacity most lines that can be queued at once
+     * @param policy what to do when a line is sent while the queue is full
+     */
+    public OutboundQueue(int capacity, OverflowPolicy policy) {
+        this(capacity, policy, 0, 1);
+    }
+
+    /**
+     * Constructor for an outbound queue
+     * @param capacity most lines that can be queued at once
+     * @param policy what to do when a line is sent while the queue is full
+     * @param ratePerSecond most non-urgent lines written per second once the burst is used, or 0 for no limit
+     * @param burst most non-urgent lines written at full speed
+     */
+    public OutboundQueue(int capacity, OverflowPolicy policy, double ratePerSecond, int burst) {
+        this.capacity = Math.max(1, capacity);
+        this.policy = policy;
+        this.bucket = new TokenBucket(ratePerSecond, burst);
+
+        lanes = new ArrayList<>();
+        for (int i = 0; i < SendPriority.values().length; i++) {
+            lanes.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Queue a line, applying the overflow policy if the queue is full
+     * Only chat lines are ever dropped quietly, as nothing waits on a reply to them; a dropped line that a request
+     * waits on (e.g JOIN or NAMES) is reported with an IOException instead, so the request fails rather than hangs
+     * @param line the line to queue
+     * @param mayBlock false if the caller must not wait for room (e.g it is the event loop that drains the queue)
+     * @return true if the line was queued, false if it was a chat line and was dropped
+     * @throws IOException if the queue is closed, full with the FAIL policy, or the line was dropped and isn't chat
+     */
+    public synchronized boolean offer(String line, boolean mayBlock) throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+
+        SendPriority priority = SendPriority.of(line);
+
+        // Urgent lines (e.g QUIT) always get in, as dropping them would leave the connection hanging
+        if (size >= capacity && priority != SendPriority.URGENT) {
+            switch (policy) {
+                case DROP_NEWEST:
+                    return dropNewest(line, priority);
+                case DROP_OLDEST:
+                    // Urgent lines are never dropped, so if only they are queued this line is let in over capacity
+                    if (!dropOldestChat() && lanes.get(SendPriority.URGENT.ordinal()).size() < size) {
+                        return dropNewest(line, priority);
+                    }
+                    break;
+                case BLOCK:
+                    if (!mayBlock) {
+                        // Waiting here would stop the queue ever draining, so fail instead
+                        throw new IOException("Outbound queue full (" + capacity + " lines waiting to be sent)");
+                    }
+                    waitForRoom();
+                    break;
+                default:
+                    throw new IOException("Outbound queue full (" + capacity + " lines waiting to be sent)");
+            }
+        }
+
+        QueuedLine queued = new QueuedLine();
+        queued.line = line;
+        queued.queuedNanos = System.nanoTime();
+        lanes.get(priority.ordinal()).addLast(queued);
+        size++;
+        return true;
+    }
+
+    /**
+     * Drop a new line that there is no room for
+     * @param line the line
+     * @param priority the line's priority
+     * @return false, as the line was dropped
+     * @throws IOException if the line isn't chat, as its sender may be waiting on a reply to it
+     */
+    private boolean dropNewest(String line, SendPriority priority) throws IOException {
+        if (priority != SendPriority.CHAT) {
+            int end = line.indexOf(' ');
+            String command = end < 0 ? line : line.substring(0, end);
+            throw new IOException("Outbound queue full (" + capacity + " lines waiting to be sent), " + command + " dropped");
+        }
+        return false;
+    }
+
+    /**
+     * Discard the oldest queued chat line, the only lines that can be discarded without failing a request
+     * @return true if a line was discarded, false if no chat lines are queued
+     */
+    private boolean dropOldestChat() {
+        ArrayDeque<QueuedLine> lane = lanes.get(SendPriority.CHAT.ordinal());
+        if (lane.isEmpty()) {
+            return false;
+        }
+
+        lane.pollFirst();
+        size--;
+        return true;
+    }
+
+    /**
+     * Wait until the queue has room for another line
+     * @throws IOException if interrupted or the queue closes while waiting
+     */
+    private void waitForRoom() throws IOException {
+        try {
+            while (size >= capacity && !closed) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting to send", e);
+        }
+
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    /**
+     * Getter for the next line allowed to be written now, without removing it
+     * @param nowNanos current System.nanoTime()
+     * @return the next line, or null if the queue is empty or the rate limit has been reached
+     */
+    public synchronized String peek(long nowNanos) {
+        ArrayDeque<QueuedLine> lane = nextLane(nowNanos);
+        return lane == null ? null : lane.peekFirst().line;
+    }
+
+    /**
+     * Remove the line returned by the last peek, taking a token from the rate limit for it
+     * @param nowNanos current System.nanoTime()
+     * @return the removed line, or null if no line is allowed to be written now
+     */
+    public synchronized String poll(long nowNanos) {
+        ArrayDeque<QueuedLine> lane = nextLane(nowNanos);
+        if (lane == null) {
+            return null;
+        }
+
+        // Urgent lines skip the rate limit, everything else pays for its place
+        if (lane != lanes.get(SendPriority.URGENT.ordinal())) {
+            bucket.tryTake(nowNanos);
+        }
+
+        QueuedLine queued = lane.pollFirst();
+        size--;
+
+        sentCount++;
+        totalWaitNanos += nowNanos - queued.queuedNanos;
+
+        // Wake senders waiting for room
+        if (policy == OverflowPolicy.BLOCK) {
+            notifyAll();
+        }
+        return queued.line;
+    }
+
+    /**
+     * Find the highest priority lane whose next line may be written now
+     * @param nowNanos current System.nanoTime()
+     * @return the lane, or null if nothing may be written now
+     */
+    private ArrayDeque<QueuedLine> nextLane(long nowNanos) {
+        if (!lanes.get(SendPriority.URGENT.ordinal()).isEmpty()) {
+            return lanes.get(SendPriority.URGENT.ordinal());
+        }
+
+        // Lower priorities only go ahead if the rate limit allows
+        if (size == 0 || bucket.nanosUntilToken(nowNanos) > 0) {
+            return null;
+        }
+
+        for (ArrayDeque<QueuedLine> lane : lanes) {
+            if (!lane.isEmpty()) {
+                return lane;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get how long until the rate limit allows the next queued line to be written
+     * @param nowNanos current System.nanoTime()
+     * @return nanoseconds to wait, 0 if a line may be written now, or -1 if the queue is empty
+     */
+    public synchronized long nanosUntilReady(long nowNanos) {
+        if (size == 0) {
+            return -1;
+        }
+        if (!lanes.get(SendPriority.URGENT.ordinal()).isEmpty()) {
+            return 0;
+        }
+        return bucket.nanosUntilToken(nowNanos);
+    }
+
+    /**
+     * Getter for the number of queued lines
+     * @return number of lines waiting to be written
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Getter for the number of queued lines of a single priority
+     * @param priority the priority to count
+     * @return number of lines of that priority waiting to be written
+     */
+    public synchronized int size(SendPriority priority) {
+        return lanes.get(priority.ordinal()).size();
+    }
+
+    /**
+     * Check if there are no queued lines
+     * @return true if the queue is empty, false otherwise
+     */
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get the average time lines spent queued before being written
+     * @return average wait of lines written so far
+     */
+    public synchronized Duration getAverageWait() {
+        return sentCount == 0 ? Duration.ZERO : Duration.ofNanos(totalWaitNanos / sentCount);
+    }
+
+    /**
+     * Get how long the oldest queued line has been waiting (i.e how far behind sending is)
+     * @return wait of the oldest queued line, zero if the queue is empty
+     */
+    public synchronized Duration getOldestWait() {
+        long oldest = Long.MAX_VALUE;
+        for (ArrayDeque<QueuedLine> lane : lanes) {
+            if (!lane.isEmpty()) {
+                oldest = Math.min(oldest, lane.peekFirst().queuedNanos);
+            }
+        }
+
+        return oldest == Long.MAX_VALUE ? Duration.ZERO : Duration.ofNanos(System.nanoTime() - oldest);
+    }
+
+    /**
+     * Discard all queued lines and stop accepting new ones
+     */
+    public synchronized void close() {
+        closed = true;
+        for (ArrayDeque<QueuedLine> lane : lanes) {
+            lane.clear();
+        }
+        size = 0;
+        notifyAll();
+    }
+}
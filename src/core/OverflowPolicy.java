@@ -0,0 +1,13 @@
+/**
+ * What to do with a line sent while a connection's outbound queue is full
+ */
+public enum OverflowPolicy {
+    // Reject the new line with an error
+    FAIL,
+    // Discard the new line, silently if it is chat, otherwise with an error so a request waiting on it fails
+    DROP_NEWEST,
+    // Discard the oldest queued chat line to make room for the new one, or the new line as DROP_NEWEST if there is none
+    DROP_OLDEST,
+    // Wait until there is room, or fail as FAIL on the connection's event loop and the shared scheduler, which free it
+    BLOCK
+}
@@ -0,0 +1,151 @@
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Requests waiting on a reply from the server, oldest first
+ * Replies that carry a key (e.g the channel name in REPLY_NAMES) complete the oldest request for that key,
+ * so many requests of the same type can be in flight on one connection at once
+ * @param <T> type of value the reply completes requests with
+ */
+public class PendingReplies<T> {
+    // Key used for replies that do not carry one (e.g REPLY_TIME)
+    private static final String NO_KEY = "";
+
+    // FIFO of waiting requests for each key
+    private HashMap<String, ArrayDeque<CompletableFuture<T>>> pending = new HashMap<>();
+
+    /**
+     * Queue a new request for a reply without a key
+     * @return future that completes when the reply arrives
+     */
+    public CompletableFuture<T> add() {
+        return add(NO_KEY);
+    }
+
+    /**
+     * Queue a new request for a reply with the given key
+     * @param key key the reply will carry
+     * @return future that completes when the reply arrives
+     */
+    public synchronized CompletableFuture<T> add(String key) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        pending.computeIfAbsent(key, k -> new ArrayDeque<>()).addLast(future);
+        return future;
+    }
+
+    /**
+     * Getter for the most recent request still waiting on a reply with the given key
+     * Lets a caller share a request already in flight instead of sending a duplicate
+     * @param key key the reply will carry
+     * @return the newest waiting request, or null if none are waiting
+     */
+    public synchronized CompletableFuture<T> newest(String key) {
+        ArrayDeque<CompletableFuture<T>> queue = pending.get(key);
+        return queue == null ? null : queue.peekLast();
+    }
+
+    /**
+     * Complete the oldest request without a key
+     * @param value value to complete the request with
+     * @return true if a request was waiting, false otherwise
+     */
+    public boolean complete(T value) {
+        return complete(NO_KEY, value);
+    }
+
+    /**
+     * Complete the oldest request with the given key
+     * @param key key carried by the reply
+     * @param value value to complete the request with
+     * @return true if a request was waiting, false otherwise
+     */
+    public boolean complete(String key, T value) {
+        CompletableFuture<T> future = poll(key);
+
+        // Reply was unsolicited (or its request was already abandoned)
+        if (future == null) {
+            return false;
+        }
+
+        // Complete outside the lock, as continuations may queue further requests
+        future.complete(value);
+        return true;
+    }
+
+    /**
+     * Remove a request that will never be answered (e.g because it could not be sent)
+     * @param key key the request was queued under
+     * @param future the request to remove
+     */
+    public synchronized void remove(String key, CompletableFuture<T> future) {
+        ArrayDeque<CompletableFuture<T>> queue = pending.get(key);
+        if (queue == null) {
+            return;
+        }
+
+        queue.remove(future);
+        if (queue.isEmpty()) {
+            pending.remove(key);
+        }
+    }
+
+    /**
+     * Remove a request without a key that will never be answered
+     * @param future the request to remove
+     */
+    public void remove(CompletableFuture<T> future) {
+        remove(NO_KEY, future);
+    }
+
+    /**
+     * Fail every waiting request (e.g when the connection closes)
+     * @param e the reason the requests failed
+     */
+    public void failAll(Exception e) {
+        ArrayDeque<CompletableFuture<T>> failed = new ArrayDeque<>();
+
+        // Take every request out of the map under the lock
+        synchronized (this) {
+            for (ArrayDeque<CompletableFuture<T>> queue : pending.values()) {
+                failed.addAll(queue);
+            }
+            pending.clear();
+        }
+
+        for (CompletableFuture<T> future : failed) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Get number of requests still waiting on a reply
+     * @return number of waiting requests
+     */
+    public synchronized int size() {
+        int size = 0;
+        for (ArrayDeque<CompletableFuture<T>> queue : pending.values()) {
+            size += queue.size();
+        }
+        return size;
+    }
+
+    /**
+     * Take the oldest request for a key out of the map
+     * @param key key carried by the reply
+     * @return oldest waiting request, or null if none are waiting
+     */
+    private synchronized CompletableFuture<T> poll(String key) {
+        ArrayDeque<CompletableFuture<T>> queue = pending.get(key);
+        if (queue == null) {
+            return null;
+        }
+
+        CompletableFuture<T> future = queue.pollFirst();
+        if (queue.isEmpty()) {
+            pending.remove(key);
+        }
+        return future;
+    }
+}
@@ -0,0 +1,167 @@
+import java.util.EnumMap;
+import java.util.Locale;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of inbound messages through each stage from the socket to the screen
+ * Each stage's histogram holds the time since the message's previous stage, so a slow stage stands out on its own,
+ * and a separate histogram holds the whole time from the socket to the message being painted
+ */
+public class PipelineLatency {
+    // How often to print the histograms, in seconds, or 0 to never print them
+    private static final long REPORT_SECONDS = Long.getLong("chatclient.latencyReportSeconds", 0);
+
+    // Every stage in order, cached as values() copies the array on each call
+    private static final MessageStage[] STAGES = MessageStage.values();
+
+    // Latencies shared by every server model, created on first use
+    private static volatile PipelineLatency shared;
+
+    // Time spent reaching each stage from the previous one
+    private EnumMap<MessageStage, LatencyHistogram> stages = new EnumMap<>(MessageStage.class);
+    // Time from the socket to the message being painted
+    private LatencyHistogram endToEnd = new LatencyHistogram();
+
+    /**
+     * Constructor for PipelineLatency
+     */
+    public PipelineLatency() {
+        for (MessageStage stage : STAGES) {
+            stages.put(stage, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Getter for the shared latencies, which also starts printing them if a report interval is configured
+     * @return latencies shared by all server models and the UI
+     */
+    public static PipelineLatency shared() {
+        // Called for every message, so skip the lock once created
+        PipelineLatency latency = shared;
+        if (latency != null) {
+            return latency;
+        }
+
+        return createShared();
+    }
+
+    /**
+     * Create the shared latencies if another thread hasn't already
+     * @return latencies shared by all server models and the UI
+     */
+    private static synchronized PipelineLatency createShared() {
+        if (shared == null) {
+            shared = new PipelineLatency();
+
+            if (REPORT_SECONDS > 0) {
+                PipelineLatency latency = shared;
+                ClientExecutors.scheduler().scheduleWithFixedDelay(() -> {
+                    if (latency.getStage(MessageStage.PARSED).getCount() > 0) {
+                        System.out.println("Message latency:" + System.lineSeparator() + latency);
+                    }
+                }, REPORT_SECONDS, REPORT_SECONDS, TimeUnit.SECONDS);
+            }
+        }
+
+        return shared;
+    }
+
+    /**
+     * Record a message reaching a stage now
+     * @param message the message
+     * @param stage the stage it reached
+     */
+    public void record(Message message, MessageStage stage) {
+        record(message, stage, System.nanoTime());
+    }
+
+    /**
+     * Record a message reaching a stage
+     * Only messages stamped as received from the socket are timed, and only the first time they reach each stage
+     * @param message the message
+     * @param stage the stage it reached
+     * @param nanos when it reached the stage, from System.nanoTime
+     */
+    public void record(Message message, MessageStage stage, long nanos) {
+        // Receipt starts the timing, so there is nothing before it to measure against
+        if (stage == MessageStage.RECEIVED) {
+            message.stamp(stage, nanos);
+            return;
+        }
+
+        // Messages that didn't come from the socket (e.g sent by the client) aren't timed
+        if (!message.isTimed() || message.getStageNanos(stage) != 0) {
+            return;
+        }
+
+        // Time since the latest stage the message went through, as some stages can be skipped
+        for (int i = stage.ordinal() - 1; i >= 0; i--) {
+            long previous = message.getStageNanos(STAGES[i]);
+            if (previous != 0) {
+                stages.get(stage).record(nanos - previous);
+                break;
+            }
+        }
+        message.stamp(stage, nanos);
+
+        // Painting is the last stage, so the message has nothing left to time
+        if (stage == MessageStage.PAINTED) {
+            endToEnd.record(nanos - message.getStageNanos(MessageStage.RECEIVED));
+            message.unstamp();
+        }
+    }
+
+    /**
+     * Stop timing a message that won't reach any more stages (e.g there is no screen to paint it, or it is hidden)
+     * @param message the message
+     */
+    public void finish(Message message) {
+        message.unstamp();
+    }
+
+    /**
+     * Getter for the latency of a stage
+     * @param stage the stage
+     * @return time spent reaching the stage from the previous one
+     */
+    public LatencyHistogram getStage(MessageStage stage) {
+        return stages.get(stage);
+    }
+
+    /**
+     * Getter for the whole latency from the socket to the screen
+     * @return time from a message's bytes being read to it being painted
+     */
+    public LatencyHistogram getEndToEnd() {
+        return endToEnd;
+    }
+
+    /**
+     * Forget every recorded latency (e.g after warming up)
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : stages.values()) {
+            histogram.reset();
+        }
+        endToEnd.reset();
+    }
+
+    /**
+     * Summarise the latency of each stage for display, one stage per line
+     * @return the latencies
+     */
+    public String toString() {
+        StringBuilder summary = new StringBuilder();
+
+        for (MessageStage stage : STAGES) {
+            // Nothing comes before receipt
+            if (stage == MessageStage.RECEIVED) {
+                continue;
+            }
+            summary.append(String.format(Locale.ROOT, "  %-12s %s%n", stage.name().toLowerCase(Locale.ROOT), stages.get(stage)));
+        }
+
+        return summary.append(String.format(Locale.ROOT, "  %-12s %s", "end to end", endToEnd)).toString();
+    }
+}
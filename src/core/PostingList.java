@@ -0,0 +1,164 @@
+import java.util.Arrays;
+
+/**
+ * Documents containing a term, in increasing order, stored compactly for a SearchIndex
+ * Each document is stored as its distance from the one before, as a variable length integer, so most take one byte
+ * Every BLOCK documents, the document before the block and where the block starts are remembered,
+ * so a cursor can skip over whole blocks when looking for a document instead of decoding every one before it
+ */
+public class PostingList {
+    // Documents between skip entries
+    private static final int BLOCK = 128;
+
+    // Variable length distances between documents
+    private byte[] data = new byte[8];
+    private int length;
+    // Number of documents in the list
+    private int count;
+    // Newest document added, or -1 if there are none
+    private int lastDoc = -1;
+
+    // Document before each block, and the offset of the block in data
+    private int[] skipDocs = new int[1];
+    private int[] skipOffsets = new int[1];
+
+    /**
+     * Add a document, which must be after every document already in the list
+     * @param doc the document
+     */
+    public void add(int doc) {
+        // A document with the same term more than once is only listed once
+        if (doc == lastDoc) {
+            return;
+        }
+
+        // Remember where each block starts
+        if (count % BLOCK == 0) {
+            int block = count / BLOCK;
+            if (block == skipDocs.length) {
+                skipDocs = Arrays.copyOf(skipDocs, block * 2);
+                skipOffsets = Arrays.copyOf(skipOffsets, block * 2);
+            }
+            skipDocs[block] = lastDoc;
+            skipOffsets[block] = length;
+        }
+
+        // Seven bits at a time, lowest first, with the top bit set on all but the last byte
+        if (length + 5 > data.length) {
+            data = Arrays.copyOf(data, data.length + (data.length >> 1) + 5);
+        }
+        int delta = doc - lastDoc;
+        while ((delta & ~0x7F) != 0) {
+            data[length++] = (byte) ((delta & 0x7F) | 0x80);
+            delta >>>= 7;
+        }
+        data[length++] = (byte) delta;
+
+        lastDoc = doc;
+        count++;
+    }
+
+    /**
+     * Get the number of documents in the list
+     * @return number of documents
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Get the bytes used by the list's documents and skip entries
+     * @return bytes used
+     */
+    public long sizeInBytes() {
+        return data.length + 2L * Integer.BYTES * skipDocs.length;
+    }
+
+    /**
+     * Start reading the list from its first document
+     * @return a cursor before the first document
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Reads a posting list in order, skipping ahead where it can
+     * A cursor sees the documents in the list when it was made, and any added after
+     */
+    public class Cursor {
+        // Current document, -1 before the first and Integer.MAX_VALUE after the last
+        private int doc = -1;
+        // Number of documents read so far, and the offset of the next in data
+        private int index;
+        private int offset;
+
+        /**
+         * Getter for the current document
+         * @return the current document, or Integer.MAX_VALUE if the cursor is past the end
+         */
+        public int doc() {
+            return doc;
+        }
+
+        /**
+         * Move to the next document
+         * @return the next document, or Integer.MAX_VALUE if there are no more
+         */
+        public int next() {
+            if (index >= count) {
+                doc = Integer.MAX_VALUE;
+                return doc;
+            }
+
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[offset++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+
+            doc += delta;
+            index++;
+            return doc;
+        }
+
+        /**
+         * Move to the first document at or after a document
+         * @param target the document to look for
+         * @return the first document at or after the target, or Integer.MAX_VALUE if there is none
+         */
+        public int advance(int target) {
+            if (doc >= target) {
+                return doc;
+            }
+
+            // Jump to the last block that starts before the target, if it is past the current block
+            int block = index / BLOCK;
+            int low = block + 1;
+            int high = (count + BLOCK - 1) / BLOCK;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (skipDocs[middle] < target) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            if (low - 1 > block) {
+                block = low - 1;
+                doc = skipDocs[block];
+                index = block * BLOCK;
+                offset = skipOffsets[block];
+            }
+
+            // Then decode forward within the block
+            while (doc < target) {
+                next();
+            }
+            return doc;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+import java.time.Duration;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * When to try reconnecting to a server after its connection drops
+ * Delays grow exponentially up to a limit, with random jitter so many clients don't all retry at once
+ */
+public class ReconnectPolicy {
+    // Delay before the first attempt
+    private Duration initialDelay;
+    // Longest delay between attempts
+    private Duration maxDelay;
+    // Most attempts before giving up, or 0 to keep trying forever
+    private int maxAttempts;
+
+    /**
+     * Constructor for a reconnect policy
+     * @param initialDelay delay before the first attempt
+     * @param maxDelay longest delay between attempts
+     * @param maxAttempts most attempts before giving up, or 0 to keep trying forever
+     */
+    public ReconnectPolicy(Duration initialDelay, Duration maxDelay, int maxAttempts) {
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Policy used when not configured: start after a second, back off to a minute, never give up
+     * @return the default policy
+     */
+    public static ReconnectPolicy defaults() {
+        return new ReconnectPolicy(Duration.ofSeconds(1), Duration.ofMinutes(1), 0);
+    }
+
+    /**
+     * Check if another attempt should be made
+     * @param attempt number of attempts already made since the connection dropped
+     * @return true if another attempt should be made, false to give up
+     */
+    public boolean allowsAttempt(int attempt) {
+        return maxAttempts == 0 || attempt < maxAttempts;
+    }
+
+    /**
+     * Get how long to wait before an attempt
+     * @param attempt number of attempts already made since the connection dropped
+     * @return delay before the attempt, between half and all of the exponential backoff
+     */
+    public Duration delayBefore(int attempt) {
+        // Double the delay for every failed attempt, capped at the maximum
+        long backoffMillis = initialDelay.toMillis() << Math.min(attempt, 20);
+        backoffMillis = Math.min(backoffMillis, maxDelay.toMillis());
+
+        // Jitter within the upper half, so retries stay spread out but never come too soon
+        long jitterMillis = ThreadLocalRandom.current().nextLong(backoffMillis / 2 + 1);
+        return Duration.ofMillis(backoffMillis - jitterMillis);
+    }
+}
@@ -0,0 +1,204 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Users in a channel, with constant time membership checks and an alphabetical view kept up to date as users come and go
+ * Every change bumps the roster's version, and recent changes are remembered, so a view can ask for just the users
+ * added and removed since the version it last showed instead of redrawing every user
+ */
+public class Roster {
+    // Alphabetical order, ignoring case, with ties broken by case so that distinct nicknames never compare equal
+    public static final Comparator<String> ORDER = String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+
+    // Number of changes remembered for diffs, after which a view that is further behind is sent the whole roster
+    private static final int HISTORY = 1024;
+
+    /**
+     * A single user joining or leaving
+     */
+    private static class Change {
+        // Version of the roster once the change was made
+        private long version;
+        private String user;
+        private boolean added;
+    }
+
+    // Users in the roster, for membership checks
+    private HashSet<String> members = new HashSet<>();
+    // The same users in alphabetical order
+    private TreeSet<String> sorted = new TreeSet<>(ORDER);
+    // Alphabetical copy handed out to readers, made on first read after a change
+    private List<String> sortedSnapshot = List.of();
+    private boolean snapshotStale;
+
+    // Number of changes made, starting from 0 for an empty roster
+    private long version;
+    // Recent changes, oldest first
+    private ArrayDeque<Change> changes = new ArrayDeque<>();
+    // Earliest version a diff can be made from, as changes before it are forgotten
+    private long oldestVersion;
+
+    /**
+     * Add a user
+     * @param user nickname of the user
+     * @return true if the user was added, false if they were already in the roster
+     */
+    public synchronized boolean add(String user) {
+        if (!members.add(user)) {
+            return false;
+        }
+
+        sorted.add(user);
+        recordChange(user, true);
+        return true;
+    }
+
+    /**
+     * Remove a user
+     * @param user nickname of the user
+     * @return true if the user was removed, false if they weren't in the roster
+     */
+    public synchronized boolean remove(String user) {
+        if (!members.remove(user)) {
+            return false;
+        }
+
+        sorted.remove(user);
+        recordChange(user, false);
+        return true;
+    }
+
+    /**
+     * Replace every user (e.g from a NAMES reply), only changing the users that differ
+     * @param users nicknames of every user now in the roster
+     */
+    public synchronized void replaceAll(Collection<String> users) {
+        // Add users who weren't there before
+        for (String user : users) {
+            add(user);
+        }
+
+        // Usual case: nobody left without the roster hearing about it, so every user is one of those given
+        // (this only needs the sizes to match, counting each user given once as the list may repeat a user)
+        HashSet<String> replacement = new HashSet<>(users);
+        if (members.size() <= replacement.size()) {
+            return;
+        }
+
+        // Remove users who are no longer there
+        List<String> gone = new ArrayList<>();
+        for (String user : members) {
+            if (!replacement.contains(user)) {
+                gone.add(user);
+            }
+        }
+        for (String user : gone) {
+            remove(user);
+        }
+    }
+
+    /**
+     * Check if a user is in the roster
+     * @param user nickname of the user
+     * @return true if the user is in the roster, false otherwise
+     */
+    public synchronized boolean contains(String user) {
+        return members.contains(user);
+    }
+
+    /**
+     * Get the number of users in the roster
+     * @return number of users
+     */
+    public synchronized int size() {
+        return members.size();
+    }
+
+    /**
+     * Get every user in alphabetical order
+     * The list is read-only and is not changed by later changes to the roster, so it can be read from any thread
+     * @return nicknames of every user, in alphabetical order
+     */
+    public synchronized List<String> getSorted() {
+        // Only copy once per change, however many times the roster is read
+        if (snapshotStale) {
+            sortedSnapshot = List.copyOf(sorted);
+            snapshotStale = false;
+        }
+
+        return sortedSnapshot;
+    }
+
+    /**
+     * Getter for the roster's version, to ask for changes since
+     * @return number of changes made to the roster
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the users added and removed since a version
+     * A user who came and went (or went and came back) since the version is in neither list
+     * @param sinceVersion version the view last showed, from getVersion or an earlier diff
+     * @return the changes, or a reset holding every user if changes from that far back are no longer remembered
+     */
+    public synchronized RosterDiff changesSince(long sinceVersion) {
+        // Too far behind (or from a roster that has since been replaced), so start again from the whole roster
+        if (sinceVersion < oldestVersion || sinceVersion > version) {
+            return new RosterDiff(sinceVersion, version, getSorted(), List.of(), true);
+        }
+
+        // Each change flips a user in or out, so a second change to the same user cancels the first
+        // Walk back from the newest change, so only the changes since the version are looked at
+        Map<String, Boolean> net = new HashMap<>();
+        for (Iterator<Change> newestFirst = changes.descendingIterator(); newestFirst.hasNext();) {
+            Change change = newestFirst.next();
+            if (change.version <= sinceVersion) {
+                break;
+            }
+
+            if (net.remove(change.user) == null) {
+                net.put(change.user, change.added);
+            }
+        }
+
+        List<String> added = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (Map.Entry<String, Boolean> entry : net.entrySet()) {
+            (entry.getValue() ? added : removed).add(entry.getKey());
+        }
+        added.sort(ORDER);
+        removed.sort(ORDER);
+
+        return new RosterDiff(sinceVersion, version, added, removed, false);
+    }
+
+    /**
+     * Remember a change for diffs, forgetting the oldest once there are too many
+     * @param user nickname of the user who changed
+     * @param added true if the user was added, false if removed
+     */
+    private void recordChange(String user, boolean added) {
+        version++;
+        snapshotStale = true;
+
+        Change change = new Change();
+        change.version = version;
+        change.user = user;
+        change.added = added;
+        changes.addLast(change);
+
+        if (changes.size() > HISTORY) {
+            oldestVersion = changes.pollFirst().version;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+import java.util.List;
+
+/**
+ * Users added to and removed from a roster between two of its versions
+ * If the roster no longer remembers the changes since the version asked for, the diff is a reset:
+ * its added users are the whole roster, and a view should replace what it shows rather than apply the diff
+ */
+public class RosterDiff {
+    private long fromVersion;
+    private long toVersion;
+    private List<String> added;
+    private List<String> removed;
+    private boolean reset;
+
+    /**
+     * Constructor for RosterDiff
+     * @param fromVersion version the diff starts from
+     * @param toVersion version the diff brings a view up to
+     * @param added users added since fromVersion, or every user if this is a reset
+     * @param removed users removed since fromVersion, empty if this is a reset
+     * @param reset true if the view must replace what it shows with the added users
+     */
+    public RosterDiff(long fromVersion, long toVersion, List<String> added, List<String> removed, boolean reset) {
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.added = added;
+        this.removed = removed;
+        this.reset = reset;
+    }
+
+    /**
+     * Getter for the version the diff starts from
+     * @return the version asked for
+     */
+    public long getFromVersion() {
+        return fromVersion;
+    }
+
+    /**
+     * Getter for the version the diff brings a view up to, to ask for the next diff from
+     * @return the roster's version when the diff was made
+     */
+    public long getToVersion() {
+        return toVersion;
+    }
+
+    /**
+     * Getter for the users added, in alphabetical order
+     * @return users added since the version asked for, or every user if this is a reset
+     */
+    public List<String> getAdded() {
+        return added;
+    }
+
+    /**
+     * Getter for the users removed, in alphabetical order
+     * @return users removed since the version asked for
+     */
+    public List<String> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Check if the diff replaces the whole roster rather than updating it
+     * @return true if a view must replace what it shows with the added users, false otherwise
+     */
+    public boolean isReset() {
+        return reset;
+    }
+
+    /**
+     * Check if nothing changed
+     * @return true if no users were added or removed, false otherwise
+     */
+    public boolean isEmpty() {
+        return !reset && added.isEmpty() && removed.isEmpty();
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * A message found by a search, and the target it was found in
+ */
+public class SearchHit {
+    private Target target;
+    private Message message;
+
+    /**
+     * Constructor for SearchHit
+     * @param target the target the message is in
+     * @param message the message
+     */
+    public SearchHit(Target target, Message message) {
+        this.target = target;
+        this.message = message;
+    }
+
+    /**
+     * Getter for the target
+     * @return the target the message is in
+     */
+    public Target getTarget() {
+        return target;
+    }
+
+    /**
+     * Getter for the message
+     * @return the message that matched
+     */
+    public Message getMessage() {
+        return message;
+    }
+
+    /**
+     * Get the hit as it is shown in search results
+     * @return the server and target, followed by the message
+     */
+    @Override
+    public String toString() {
+        return target.getServer() + " " + target.getName() + " " + message.toString();
+    }
+}
@@ -0,0 +1,453 @@
+import java.time.LocalDateTime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Full-text index of every stored message across all servers and targets, updated as messages are added
+ * Each word of a message's content is a term, and each term has a PostingList of the messages containing it,
+ * so a search only reads the lists of the words searched for rather than the messages themselves
+ * Each target is also a term, so limiting a search to a target is one more list to intersect
+ *
+ * The index holds a message's target, time and position in its MessageStore, and reads only the hits back in
+ *
+ * Messages are indexed per store rather than per Target object, as a target is made again (e.g joined again, or
+ * replaced) while its store stays the same; a store is indexed once while any target has it open, and its messages
+ * are dropped from the index once the last target using it is closed
+ */
+public class SearchIndex {
+    // Flag for whether the client keeps a shared index, on unless set to false
+    private static final boolean ENABLED = !"false".equals(System.getProperty("chatclient.search"));
+
+    // Words longer than this are left out, as they are rarely searched for (e.g links)
+    private static final int MAX_TERM_LENGTH = 64;
+
+    // Most stored messages read in at once when indexing a store opened with messages in it
+    private static final int BACKFILL_CHUNK = 256;
+
+    // Prefix of the terms naming a target, which can't clash with words as words never contain it
+    private static final char TARGET_TERM = '\u0000';
+
+    // Index shared by every target, created on first use
+    private static volatile SearchIndex shared;
+
+    // Documents containing each term
+    private HashMap<String, PostingList> postings = new HashMap<>();
+
+    // For each document (i.e message), in the order they were added: its store, server time and store position
+    private int[] docTargets = new int[1024];
+    private long[] docTimes = new long[1024];
+    private long[] docPositions = new long[1024];
+    private int docCount;
+
+    // Stores by the number documents refer to them by, and each store's number by its key
+    // A store's target is the newest open target using it, or null once no target has it open
+    private List<Target> targets = new ArrayList<>();
+    private HashMap<String, Integer> storeIds = new HashMap<>();
+    // Number of the store each open target uses
+    private IdentityHashMap<Target, Integer> targetIds = new IdentityHashMap<>();
+    // For each store, the first document not cleared with the target's history
+    private int[] clearedBefore = new int[16];
+    // For each store, the position new messages must be at or after, so no message is indexed twice
+    private long[] indexedTo = new long[16];
+    // For each store, the position messages stored before it was opened are still added up to
+    private long[] storedTo = new long[16];
+
+    // Flag for whether documents of closed stores are waiting to be dropped
+    private boolean compactScheduled;
+
+    /**
+     * Check if the client keeps a shared index
+     * @return true unless turned off with -Dchatclient.search=false
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Getter for the shared index
+     * @return index shared by every target
+     */
+    public static SearchIndex shared() {
+        // Called for every message, so skip the lock once created
+        SearchIndex index = shared;
+        if (index != null) {
+            return index;
+        }
+
+        return createShared();
+    }
+
+    /**
+     * Create the shared index if another thread hasn't already
+     * @return index shared by every target
+     */
+    private static synchronized SearchIndex createShared() {
+        if (shared == null) {
+            shared = new SearchIndex();
+        }
+
+        return shared;
+    }
+
+    /**
+     * Start indexing a target's store (e.g when the target is made), adding the messages stored before it was opened
+     * on a background thread; if another target already has the store open, the target shares its entries instead
+     * @param target the target
+     * @param key identifies the target's store (e.g its directory), or null if the target's messages aren't stored
+     * @param end position in the store that messages were stored up to when it was opened
+     */
+    public void open(Target target, String key, long end) {
+        if (key == null) {
+            return;
+        }
+
+        int id;
+        synchronized (this) {
+            Integer existing = storeIds.get(key);
+            if (existing != null) {
+                // Already indexed, so the target only takes over answering for the store
+                targetIds.put(target, existing);
+                targets.set(existing, target);
+                return;
+            }
+
+            id = targets.size();
+            targets.add(target);
+            storeIds.put(key, id);
+            targetIds.put(target, id);
+            if (id == clearedBefore.length) {
+                clearedBefore = Arrays.copyOf(clearedBefore, id * 2);
+                indexedTo = Arrays.copyOf(indexedTo, id * 2);
+                storedTo = Arrays.copyOf(storedTo, id * 2);
+            }
+            // Messages from the end on arrive through add, the ones before it are added here
+            indexedTo[id] = end;
+            storedTo[id] = end;
+        }
+
+        if (end <= 0) {
+            return;
+        }
+
+        ClientExecutors.background().execute(() -> addStored(target, id, end));
+    }
+
+    /**
+     * Add the messages stored before a store was opened, a chunk at a time
+     * Each chunk is read in under the store's lock and tokenised after it is released, so messages can be appended
+     * (e.g by the event loop) between chunks rather than waiting for the whole history
+     * @param target the target that opened the store
+     * @param id number of the store
+     * @param end position in the store to add messages up to
+     */
+    private void addStored(Target target, int id, long end) {
+        List<Message> messages = new ArrayList<>(BACKFILL_CHUNK);
+        List<Long> positions = new ArrayList<>(BACKFILL_CHUNK);
+
+        long from = 0;
+        while (from < end) {
+            from = target.forEachStoredMessage(from, end, BACKFILL_CHUNK, (position, message) -> {
+                messages.add(message);
+                positions.add(position);
+            });
+
+            synchronized (this) {
+                for (int i = 0; i < messages.size(); i++) {
+                    // Store closed or cleared while its messages were being added
+                    if (targets.get(id) == null || positions.get(i) >= storedTo[id]) {
+                        return;
+                    }
+                    addDocument(id, messages.get(i), positions.get(i));
+                }
+            }
+
+            messages.clear();
+            positions.clear();
+        }
+    }
+
+    /**
+     * Add a message as it is stored
+     * @param target the target the message was added to
+     * @param message the message
+     * @param position position of the message in the target's store
+     */
+    public synchronized void add(Target target, Message message, long position) {
+        Integer id = targetIds.get(target);
+        // Target isn't indexed, or the message is already
+        if (id == null || position < indexedTo[id]) {
+            return;
+        }
+
+        indexedTo[id] = position + 1;
+        addDocument(id, message, position);
+    }
+
+    /**
+     * Add a message as a document, under every term in it
+     * @param id number of the message's store
+     * @param message the message
+     * @param position position of the message in the store
+     */
+    private void addDocument(int id, Message message, long position) {
+        if (docCount == docTargets.length) {
+            int capacity = docCount + (docCount >> 1);
+            docTargets = Arrays.copyOf(docTargets, capacity);
+            docTimes = Arrays.copyOf(docTimes, capacity);
+            docPositions = Arrays.copyOf(docPositions, capacity);
+        }
+
+        int doc = docCount++;
+        docTargets[doc] = id;
+        docTimes[doc] = message.getServerMillis();
+        docPositions[doc] = position;
+
+        posting(TARGET_TERM + Integer.toString(id)).add(doc);
+        for (String term : tokenize(message.getMessage())) {
+            posting(term).add(doc);
+        }
+    }
+
+    /**
+     * Forget every message of a target added so far (e.g once its history is cleared)
+     * @param target the target
+     */
+    public synchronized void forget(Target target) {
+        Integer id = targetIds.get(target);
+        if (id != null) {
+            clearedBefore[id] = docCount;
+            // The store starts again from position 0, and what was stored before is gone
+            indexedTo[id] = 0;
+            storedTo[id] = 0;
+        }
+    }
+
+    /**
+     * Stop indexing a target (e.g once it is removed), dropping its store's messages if no other target has it open
+     * The messages are dropped on a background thread, along with those of any other store closed meanwhile
+     * @param target the target
+     */
+    public synchronized void close(Target target) {
+        Integer id = targetIds.remove(target);
+        if (id == null || targets.get(id) != target) {
+            return;
+        }
+
+        // Another target still using the store takes over answering for it
+        for (Map.Entry<Target, Integer> entry : targetIds.entrySet()) {
+            if (entry.getValue().equals(id)) {
+                targets.set(id, entry.getKey());
+                return;
+            }
+        }
+
+        // Last target using the store, so let go of the target and drop the store's messages
+        targets.set(id, null);
+        storeIds.values().remove(id);
+        if (!compactScheduled) {
+            compactScheduled = true;
+            ClientExecutors.background().execute(this::compact);
+        }
+    }
+
+    /**
+     * Drop the documents of closed stores and cleared histories, renumbering the rest in the same order
+     */
+    private synchronized void compact() {
+        compactScheduled = false;
+
+        // New number of each document, or -1 if it is dropped
+        int[] renumbered = new int[docCount];
+        int kept = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            int id = docTargets[doc];
+            if (targets.get(id) == null || doc < clearedBefore[id]) {
+                renumbered[doc] = -1;
+                continue;
+            }
+
+            renumbered[doc] = kept;
+            docTargets[kept] = id;
+            docTimes[kept] = docTimes[doc];
+            docPositions[kept] = docPositions[doc];
+            kept++;
+        }
+        docCount = kept;
+        Arrays.fill(clearedBefore, 0);
+
+        // Documents keep their order, so each list can be copied across in one pass
+        Iterator<Map.Entry<String, PostingList>> entries = postings.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, PostingList> entry = entries.next();
+            PostingList compacted = new PostingList();
+            PostingList.Cursor cursor = entry.getValue().cursor();
+            for (int doc = cursor.next(); doc != Integer.MAX_VALUE; doc = cursor.next()) {
+                if (renumbered[doc] >= 0) {
+                    compacted.add(renumbered[doc]);
+                }
+            }
+
+            if (compacted.size() == 0) {
+                entries.remove();
+            } else {
+                entry.setValue(compacted);
+            }
+        }
+    }
+
+    /**
+     * Get the number of messages added
+     * @return number of messages in the index
+     */
+    public synchronized int size() {
+        return docCount;
+    }
+
+    /**
+     * Find the newest messages containing every word searched for
+     * @param text the words to search for
+     * @param target target to search in, or null to search every target
+     * @param from earliest server time to include, or null for no limit
+     * @param to server time to stop before, or null for no limit
+     * @param limit most messages to return
+     * @return the messages found, newest first
+     */
+    public List<SearchHit> search(String text, Target target, LocalDateTime from, LocalDateTime to, int limit) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(text));
+        if (terms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        List<Target> hitTargets = new ArrayList<>();
+        List<Long> hitPositions = new ArrayList<>();
+
+        synchronized (this) {
+            if (target != null) {
+                Integer targetId = targetIds.get(target);
+                if (targetId == null) {
+                    return List.of();
+                }
+                terms.add(TARGET_TERM + Integer.toString(targetId));
+            }
+
+            // Every term must have been seen, or nothing matches
+            List<PostingList> lists = new ArrayList<>();
+            for (String term : terms) {
+                PostingList list = postings.get(term);
+                if (list == null) {
+                    return List.of();
+                }
+                lists.add(list);
+            }
+
+            // Walk the shortest list, skipping ahead in the others, so the work is bounded by the rarest term
+            lists.sort(Comparator.comparingInt(PostingList::size));
+            PostingList.Cursor[] cursors = new PostingList.Cursor[lists.size()];
+            for (int i = 0; i < cursors.length; i++) {
+                cursors[i] = lists.get(i).cursor();
+            }
+
+            long fromMillis = from == null ? Long.MIN_VALUE : Message.toMillis(from);
+            long toMillis = to == null ? Long.MAX_VALUE : Message.toMillis(to);
+
+            // Newest matches so far, oldest at the head so it is the one replaced
+            PriorityQueue<Integer> newest = new PriorityQueue<>(limit + 1, Comparator.comparingLong((Integer doc) -> docTimes[doc]));
+
+            int doc = cursors[0].next();
+            while (doc != Integer.MAX_VALUE) {
+                // Find a document every list has, starting again from the leading list whenever another is ahead
+                int ahead = doc;
+                for (int i = 1; i < cursors.length && ahead == doc; i++) {
+                    ahead = cursors[i].advance(doc);
+                }
+                if (ahead != doc) {
+                    doc = cursors[0].advance(ahead);
+                    continue;
+                }
+
+                // Documents of cleared histories and closed stores stay until compacted, but aren't matched
+                long time = docTimes[doc];
+                int id = docTargets[doc];
+                if (time >= fromMillis && time < toMillis && doc >= clearedBefore[id] && targets.get(id) != null
+                    && (newest.size() < limit || time >= docTimes[newest.peek()])) {
+                    newest.add(doc);
+                    if (newest.size() > limit) {
+                        newest.poll();
+                    }
+                }
+
+                doc = cursors[0].next();
+            }
+
+            // Newest first
+            Integer[] docs = newest.toArray(new Integer[0]);
+            Arrays.sort(docs, Comparator.comparingLong((Integer match) -> docTimes[match]).reversed());
+            for (Integer match : docs) {
+                hitTargets.add(targets.get(docTargets[match]));
+                hitPositions.add(docPositions[match]);
+            }
+        }
+
+        // Read the messages back in outside the lock, so messages can be added meanwhile
+        List<SearchHit> hits = new ArrayList<>();
+        for (int i = 0; i < hitTargets.size(); i++) {
+            Message message = hitTargets.get(i).getStoredMessage(hitPositions.get(i));
+            if (message != null) {
+                hits.add(new SearchHit(hitTargets.get(i), message));
+            }
+        }
+
+        return hits;
+    }
+
+    /**
+     * Split text into the terms it is indexed and searched by: runs of letters and digits, in lower case
+     * @param text the text
+     * @return the terms, in the order they appear
+     */
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        int length = text.length();
+        int start = -1;
+
+        for (int i = 0; i <= length; i++) {
+            boolean wordChar = i < length && Character.isLetterOrDigit(text.charAt(i));
+
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                if (i - start <= MAX_TERM_LENGTH) {
+                    terms.add(text.substring(start, i).toLowerCase());
+                }
+                start = -1;
+            }
+        }
+
+        return terms;
+    }
+
+    /**
+     * Get the posting list of a term, creating it if it is new
+     * @param term the term
+     * @return the term's posting list
+     */
+    private PostingList posting(String term) {
+        PostingList list = postings.get(term);
+        if (list == null) {
+            list = new PostingList();
+            postings.put(term, list);
+        }
+        return list;
+    }
+
+}
@@ -0,0 +1,26 @@
+/**
+ * Priority classes for lines sent to a server, highest first
+ */
+public enum SendPriority {
+    // Keeps the connection alive or ends it (PING, PONG, QUIT), sent ahead of everything and never rate limited
+    URGENT,
+    // Changes or queries state on the server (e.g JOIN, PART, NAMES, LIST)
+    CONTROL,
+    // Chat messages (PRIVMSG), sent once nothing more important is waiting
+    CHAT;
+
+    /**
+     * Classify a line by its command
+     * @param line the line to classify
+     * @return the line's priority
+     */
+    public static SendPriority of(String line) {
+        if (line.startsWith("PRIVMSG ")) {
+            return CHAT;
+        }
+        if (line.startsWith("PING") || line.startsWith("PONG") || line.startsWith("QUIT")) {
+            return URGENT;
+        }
+        return CONTROL;
+    }
+}
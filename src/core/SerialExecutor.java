@@ -0,0 +1,65 @@
+import java.util.ArrayDeque;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Runs tasks one at a time, in the order they were submitted, on another executor
+ * Lets events for one server be handed off the event loop without being reordered
+ */
+public class SerialExecutor implements Executor {
+    // Executor the tasks actually run on
+    private Executor executor;
+    // Tasks waiting to run, oldest first
+    private ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    // Flag set while a drain of the queue is running or submitted
+    private boolean draining;
+
+    /**
+     * Constructor for a serial executor
+     * @param executor executor to run the tasks on
+     */
+    public SerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Queue a task to run after every task submitted before it
+     * @param task the task to run
+     */
+    public void execute(Runnable task) {
+        synchronized (this) {
+            tasks.addLast(task);
+
+            // A drain already running will pick the task up
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+
+        executor.execute(this::drain);
+    }
+
+    /**
+     * Run queued tasks until there are none left
+     */
+    private void drain() {
+        while (true) {
+            Runnable task;
+            synchronized (this) {
+                task = tasks.pollFirst();
+                if (task == null) {
+                    draining = false;
+                    return;
+                }
+            }
+
+            // One failing task must not stop the ones after it
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
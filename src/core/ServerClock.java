@@ -0,0 +1,180 @@
+import java.util.ArrayDeque;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Estimate of a server's clock, kept in sync by sampling TIME in the background
+ * Messages are stamped from the estimate instead of asking the server for the time on every message
+ */
+public class ServerClock {
+    // How often the server's time is sampled
+    private static final long SAMPLE_INTERVAL_SECONDS = 60;
+    // Number of recent samples the estimate is chosen from
+    private static final int SAMPLE_WINDOW = 8;
+
+    /**
+     * A single TIME round trip
+     */
+    private static class Sample {
+        // Server time, as reported in the reply
+        private LocalDateTime serverTime;
+        // Local monotonic time half way between sending the request and receiving the reply
+        private long midpointNanos;
+        // Server time minus local time at the midpoint
+        private long offsetNanos;
+        // Time between sending the request and receiving the reply
+        private long roundTripNanos;
+    }
+
+    // Server whose clock is being estimated
+    private ServerModel model;
+
+    // Most recent samples, oldest first
+    private ArrayDeque<Sample> samples = new ArrayDeque<>();
+    // Sample the estimate is currently based on
+    private Sample best;
+    // Spread of the recent samples' offsets around the best sample's offset
+    private long jitterNanos;
+
+    // Periodic sampling task, while running
+    private ScheduledFuture<?> samplingTask;
+
+    /**
+     * Constructor for a server clock
+     * @param model the server whose clock is being estimated
+     */
+    public ServerClock(ServerModel model) {
+        this.model = model;
+    }
+
+    /**
+     * Start sampling the server's time periodically
+     */
+    public synchronized void start() {
+        if (samplingTask != null) {
+            return;
+        }
+
+        // Sample immediately, then keep the estimate fresh in the background
+        samplingTask = ClientExecutors.scheduler().scheduleAtFixedRate(this::sample, 0, SAMPLE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop sampling the server's time
+     */
+    public synchronized void stop() {
+        if (samplingTask != null) {
+            samplingTask.cancel(false);
+            samplingTask = null;
+        }
+    }
+
+    /**
+     * Send a single TIME request and add the round trip to the estimate
+     */
+    public void sample() {
+        // Only sample a connection that is ready (e.g not one that is quitting)
+        if (model.getState() != ConnectionState.READY) {
+            return;
+        }
+
+        // Local times at which the request was sent
+        long sentNanos = System.nanoTime();
+        LocalDateTime sentTime = LocalDateTime.now();
+
+        model.getTimeFuture().thenAccept(serverTimeString -> {
+            long receivedNanos = System.nanoTime();
+
+            Sample sample = new Sample();
+            sample.serverTime = LocalDateTime.parse(serverTimeString);
+            sample.roundTripNanos = receivedNanos - sentNanos;
+            sample.midpointNanos = sentNanos + sample.roundTripNanos / 2;
+
+            // Assume the server read its clock half way through the round trip
+            LocalDateTime localMidpoint = sentTime.plusNanos(sample.roundTripNanos / 2);
+            sample.offsetNanos = Duration.between(localMidpoint, sample.serverTime).toNanos();
+
+            addSample(sample);
+        }).exceptionally(e -> {
+            // A lost or malformed sample leaves the previous estimate in place
+            return null;
+        });
+    }
+
+    /**
+     * Add a sample and re-estimate the server's clock
+     * @param sample the new sample
+     */
+    private synchronized void addSample(Sample sample) {
+        samples.addLast(sample);
+        if (samples.size() > SAMPLE_WINDOW) {
+            samples.removeFirst();
+        }
+
+        // Sample with the shortest round trip has the smallest error, so base the estimate on it
+        best = sample;
+        for (Sample candidate : samples) {
+            if (candidate.roundTripNanos < best.roundTripNanos) {
+                best = candidate;
+            }
+        }
+
+        // Jitter is the RMS difference between each sample's offset and the chosen offset
+        double sumOfSquares = 0;
+        for (Sample candidate : samples) {
+            double difference = candidate.offsetNanos - best.offsetNanos;
+            sumOfSquares += difference * difference;
+        }
+        jitterNanos = (long) Math.sqrt(sumOfSquares / samples.size());
+    }
+
+    /**
+     * Get the estimated current time on the server
+     * Falls back to the client's clock until the first sample arrives
+     * @return estimated server time
+     */
+    public synchronized LocalDateTime now() {
+        if (best == null) {
+            return LocalDateTime.now();
+        }
+
+        // Advance the sampled server time by the monotonic time elapsed since it was taken
+        return best.serverTime.plusNanos(System.nanoTime() - best.midpointNanos);
+    }
+
+    /**
+     * Check if at least one sample has been taken
+     * @return true if the estimate is based on the server's clock, false otherwise
+     */
+    public synchronized boolean isSynchronised() {
+        return best != null;
+    }
+
+    /**
+     * Get the estimated difference between the server's clock and the client's clock
+     * @return server time minus client time
+     */
+    public synchronized Duration getOffset() {
+        return best == null ? Duration.ZERO : Duration.ofNanos(best.offsetNanos);
+    }
+
+    /**
+     * Get how much recent samples disagree with the estimate
+     * @return RMS jitter of recent offsets
+     */
+    public synchronized Duration getJitter() {
+        return Duration.ofNanos(jitterNanos);
+    }
+
+    /**
+     * Get the round trip time of the sample the estimate is based on
+     * @return round trip time of the best sample
+     */
+    public synchronized Duration getRoundTripTime() {
+        return best == null ? Duration.ZERO : Duration.ofNanos(best.roundTripNanos);
+    }
+}
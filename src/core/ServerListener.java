@@ -4,4 +4,6 @@
 public interface ServerListener {
     // When the serverModel encounters an error
     void onError(String error);
+    // When the serverModel's connection moves to a new stage in its lifecycle
+    void onStateChanged(ServerModel model, ConnectionState state);
 }
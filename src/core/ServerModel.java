@@ -0,0 +1,1452 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Arrays;
+
+import java.net.UnknownHostException;
+import java.net.NoRouteToHostException;
+import java.net.ConnectException;
+import java.net.BindException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.io.EOFException;
+
+import java.io.IOException;
+
+import java.nio.channels.ClosedChannelException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+
+import java.lang.StackWalker;
+import java.lang.StackWalker.StackFrame;
+
+/**
+ * Class representing a connection to a single server
+ */
+public class ServerModel implements ConnectionHandler {
+    // Connection to the server, serviced by the shared connection engine
+    private Connection connection;
+
+    // Host and port of the server, and the user's nickname in the server
+    private String host;
+    private int port;
+    // Users must present a nickname before using server which cannot be changed after connecting   
+    private String nickname;
+
+    // Delivers listener notifications off the event loop, in the order they happened
+    private SerialExecutor listenerDispatch = new SerialExecutor(ClientExecutors.dispatcher());
+
+    // List of listeners for target events (i.e targetController), read by the dispatch threads
+    private List<TargetListener> targetListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Add a listener for target events
+     * @param listener the listener to add
+     */
+    public void addTargetListener(TargetListener listener) {
+        targetListeners.add(listener);
+    }
+
+    /**
+     * Remove a listener for target events
+     * @param listener the listener to remove
+     */
+    public void removeTargetListener(TargetListener listener) {
+        targetListeners.remove(listener);
+    }
+
+    // List of listeners for server events (i.e serverController)
+    private List<ServerListener> serverListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Add a listener for server events
+     * @param listener the listener to add
+     */
+    public void addServerListener(ServerListener listener) {
+        serverListeners.add(listener);
+    }
+
+    /**
+     * Handle any exceptions thrown by model
+     * @param e the exception to handle
+     */
+    private void handleException(Exception e) {
+        // Turn exception into a user-friendly error message 
+        String errorMessage = getErrorMessage(e);
+
+        // Notify all listeners of the error
+        listenerDispatch.execute(() -> {
+            for (ServerListener listener : serverListeners) {
+                listener.onError(errorMessage);
+            }
+        });
+
+        // Print the stack trace to the console
+        e.printStackTrace();
+        Thread.dumpStack();
+    }
+
+    /**
+     * Exception handling and exceptional completion of a future
+     * @param e the exception to handle
+     * @param future the future to complete exceptionally
+     */
+    private void handleException(Exception e, CompletableFuture future) {
+        // Requests made while the client is quitting are expected to fail, so only report other errors
+        ConnectionState state = getState();
+        boolean quitting = state == ConnectionState.CLOSING || state == ConnectionState.CLOSED;
+        if (!(e instanceof ClosedChannelException && quitting)) {
+            handleException(e);
+        }
+    
+        future.completeExceptionally(e);
+    }
+
+    /**
+     * Get a user-friendly error message from an exception
+     * @param e the exception to get the message from
+     * @return the user-friendly error message
+     */
+    private String getErrorMessage(Exception e) {
+        String errorMessage;
+   
+        // Error messages for connection exceptions 
+        if (e instanceof IllegalArgumentException) {
+            errorMessage = "[400] Bad Request: Invalid port number. Port must be between 0 and 65535.";
+        } else if (e instanceof NullPointerException) {
+            errorMessage = "[400] Bad Request: Host cannot be null.";
+        } else if (e instanceof UnknownHostException) {
+            errorMessage = "[404] Not Found: Host not found. Check the spelling of the host or your network configuration.";
+        } else if (e instanceof NoRouteToHostException) {
+            errorMessage = "[403] Forbidden: No route to host. Check your firewall or network settings.";
+        } else if (e instanceof ConnectException) {
+            errorMessage = "[403] Forbidden: Connection refused by server. Verify the port or server configuration.";
+        } else if (e instanceof SecurityException) {
+            errorMessage = "[403] Forbidden: Permission denied. Check server security settings.";
+        } else if (e instanceof BindException) {
+            errorMessage = "[503] Service Unavailable: Port is already in use. Please try a different port.";
+        } else if (e instanceof SocketException) {
+            errorMessage = "[500] Internal Server Error: Connection issue with the server.";
+        } else if (e instanceof EOFException) {
+            errorMessage = "[500] Internal Server Error: End of stream encountered.";
+        } else if (e instanceof SocketTimeoutException) {
+            errorMessage = "[408] Request Timeout: " + e.getMessage() + ".";
+        } else if (e instanceof IOException) {
+            errorMessage = "Unknown I/O error occurred: " + e.getMessage();
+        
+        // If the server responds with an error message, print it
+        } else if (e instanceof RuntimeException) {
+            errorMessage = "Server responded with error message: " + e.getMessage();
+        
+        // If the exception is not recognized, print a generic error messag
+        } else {
+            errorMessage = "Unknown error: " + e.getMessage();
+        }
+    
+        return errorMessage;
+    }
+    
+   
+    /**
+     * Constructor for a server model 
+     * @param host the host of the server
+     * @param port the port of the server
+     * @param nickname the user's nickname in the server
+     */
+    public ServerModel(String host, int port, String nickname) {
+        this.host = host;
+        this.port = port;
+        this.nickname = nickname;
+
+        // Set up handlers for the server protocol
+        registerDefaultHandlers();
+    }
+
+    /**
+     * Disconnect from the server when the program exits
+     * Left to the caller, as a client driving many servers (e.g HeadlessClient) disconnects them all from one hook
+     */
+    public void disconnectOnExit() {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            // Attempt disconnection, waiting a moment so the stored history is closed before the client exits
+            try {
+                disconnect().get(5, TimeUnit.SECONDS);
+                System.out.println("Disconnected from " + toString());
+            } catch (Exception e) {
+                System.out.println("Could not disconnect cleanly from " + toString());
+            }
+        }));
+    }
+    
+    // Map of targets (users and channels) in the server, updated from the event loop and the dispatcher
+    private ConcurrentHashMap<String, Target> targets = new ConcurrentHashMap<>();
+   
+    // Future for connecting to the server 
+    private CompletableFuture<Void> connectFuture;
+
+    // Current stage in the connection's lifecycle, closed until connect is called
+    private ConnectionState state = ConnectionState.CLOSED;
+
+    /**
+     * Move the connection to a new stage in its lifecycle and notify listeners
+     * Once closed, the connection can only be reopened by connecting again
+     * @param newState the new stage
+     * @return true if the state changed, false if the transition was ignored
+     */
+    private boolean setState(ConnectionState newState) {
+        synchronized (this) {
+            if (state == newState || (state == ConnectionState.CLOSED && newState != ConnectionState.CONNECTING)) {
+                return false;
+            }
+            state = newState;
+        }
+
+        // Notify all listeners of the transition
+        listenerDispatch.execute(() -> {
+            for (ServerListener listener : serverListeners) {
+                listener.onStateChanged(this, newState);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Getter for the current stage in the connection's lifecycle
+     * @return the connection's state
+     */
+    public synchronized ConnectionState getState() {
+        return state;
+    }
+
+    // Estimate of the server's clock, used to stamp incoming messages
+    private ServerClock clock = new ServerClock(this);
+   
+    /**
+     * Connect to the server 
+     * @return a future that completes when the connection is established
+     */
+    public CompletableFuture<Void> connect() {
+        // Connecting again undoes any earlier disconnect
+        quitRequested = false;
+
+        // Initialise futures for connecting to and later disconnecting from the server 
+        connectFuture = new CompletableFuture<>();
+        disconnectFuture = new CompletableFuture<>();
+        setState(ConnectionState.CONNECTING);
+
+        // Resolve the host and race its addresses in the background, so the caller (e.g the EDT) never waits
+        OutboundQueue outbound = new OutboundQueue(outboundCapacity, overflowPolicy, sendRate, sendBurst);
+        ConnectionEngine.shared().connect(host, port, connectTimeout, this, outbound).thenAccept(newConnection -> {
+            connection = newConnection;
+
+            // Client gave up (e.g disconnected) while the connection was being made
+            if (!setState(ConnectionState.REGISTERING)) {
+                connection.close();
+                return;
+            }
+    
+            // Agree on compression (if enabled) before anything else is sent, then attempt to set nickname
+            negotiateCompression().thenCompose(compressed -> sendNickname(nickname)).thenRun(() -> {
+                setState(ConnectionState.READY);
+
+                // Keep an estimate of the server's clock for stamping messages
+                clock.start();
+
+                // Ping the connection whenever it goes quiet, to notice if it dies
+                lastReceivedNanos = System.nanoTime();
+                missedPongs = 0;
+                KeepaliveService.shared().register(this);
+
+                // After a dropped connection, get back into every channel the client was in
+                if (reconnectAttempt > 0) {
+                    reconnectAttempt = 0;
+                    rejoinChannels();
+                }
+                hasBeenReady = true;
+
+                connectFuture.complete(null); 
+            });
+
+        }).exceptionally(e -> {
+            Exception cause = unwrap(e);
+            handleException(cause, connectFuture);
+            terminate(cause);
+            return null;
+        });
+
+        return connectFuture;
+    }
+
+    // How long to wait for a connection before giving up
+    private Duration connectTimeout = Duration.ofSeconds(10);
+
+    /**
+     * Configure how long to wait for a connection, taking effect from the next connect
+     * @param connectTimeout how long to wait before giving up
+     */
+    public void setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    // When to reconnect after the connection drops, or null to never reconnect
+    private ReconnectPolicy reconnectPolicy = ReconnectPolicy.defaults();
+    // Flag set when the client asked to disconnect, so the connection should stay closed
+    private volatile boolean quitRequested;
+    // Flag set once the connection has been ready, so a failed first connect isn't retried
+    private boolean hasBeenReady;
+    // Number of reconnect attempts since the connection dropped
+    private int reconnectAttempt;
+    // Next reconnect attempt, while one is waiting
+    private ScheduledFuture<?> reconnectTask;
+
+    /**
+     * Configure when to reconnect after the connection drops
+     * @param reconnectPolicy the policy to use, or null to never reconnect
+     */
+    public void setReconnectPolicy(ReconnectPolicy reconnectPolicy) {
+        this.reconnectPolicy = reconnectPolicy;
+    }
+
+    /**
+     * Schedule a reconnect after the connection dropped, unless the client asked to disconnect
+     * @return true if a reconnect was scheduled, false if the client is done with the server
+     */
+    private synchronized boolean scheduleReconnect() {
+        if (quitRequested || !hasBeenReady || reconnectPolicy == null || !reconnectPolicy.allowsAttempt(reconnectAttempt)) {
+            return false;
+        }
+
+        Duration delay = reconnectPolicy.delayBefore(reconnectAttempt);
+        reconnectAttempt++;
+
+        reconnectTask = ClientExecutors.scheduler().schedule(() -> {
+            // Client may have disconnected while waiting
+            if (!quitRequested) {
+                connect();
+            }
+        }, delay.toMillis(), TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    /**
+     * Rejoin every channel the client was in before the connection dropped
+     * All JOINs and NAMES are sent in one burst, and existing channels are updated in place
+     */
+    private void rejoinChannels() {
+        Channel[] channels = getJoinedChannels();
+
+        // Queue every JOIN first, so the server handles them in one go
+        for (Channel channel : channels) {
+            joinChannel(channel.getName());
+        }
+
+        // Then ask for every channel's users, which the JOIN replies will share instead of asking again
+        for (Channel channel : channels) {
+            getNamesInChannel(channel.getName());
+        }
+    }
+
+    /**
+     * Get the exception that caused a future to fail
+     * @param e the exception a future failed with
+     * @return the underlying exception
+     */
+    private Exception unwrap(Throwable e) {
+        // Futures wrap exceptions thrown by earlier stages
+        if (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+
+        return e instanceof Exception ? (Exception) e : new RuntimeException(e);
+    }
+    
+    // Requests waiting on the server to confirm the user's nickname 
+    private PendingReplies<String> nicknameReplies = new PendingReplies<>();
+   
+    // Flag to ask the server to compress the connection, off unless enabled
+    private boolean compressionEnabled = Boolean.getBoolean("chatclient.compress");
+    // Requests waiting on the server to agree to (or refuse) compression
+    private PendingReplies<Boolean> compressReplies = new PendingReplies<>();
+
+    /**
+     * Configure whether to ask the server to compress the connection, from the next connect
+     * @param compressionEnabled true to ask for DEFLATE compression, false for plain text
+     */
+    public void setCompression(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+
+    /**
+     * Getter for the connection's compression, e.g to see how many bytes it saved
+     * @return the compression, or null if not connected or the connection isn't compressed
+     */
+    public DeflateCodec getCompression() {
+        return connection == null ? null : connection.getCompression();
+    }
+
+    /**
+     * Ask the server to compress the connection, if enabled
+     * Nothing else may be sent until the server answers, as it switches to compression straight after its reply
+     * @return a future that completes with true if the connection is now compressed, false otherwise
+     */
+    private CompletableFuture<Boolean> negotiateCompression() {
+        if (!compressionEnabled) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        // Queue future for the reply before sending
+        CompletableFuture<Boolean> compressFuture = compressReplies.add();
+
+        try {
+            send("COMPRESS " + DeflateCodec.NAME);
+
+        } catch (Exception e) {
+            compressReplies.remove(compressFuture);
+            handleException(e, compressFuture);
+            return compressFuture;
+        }
+
+        // A server that ignores the command would leave registration waiting forever
+        compressFuture.orTimeout(connectTimeout.toMillis(), TimeUnit.MILLISECONDS).exceptionally(e -> {
+            if (unwrap(e) instanceof TimeoutException) {
+                connection.fail(new SocketTimeoutException("Server did not answer COMPRESS"));
+            }
+            return false;
+        });
+        return compressFuture;
+    }
+
+    /**
+     * Handle the server agreeing to compress the connection
+     * @param messageContent the compression the server agreed to
+     */
+    private void onCompress(String messageContent) {
+        // Server compresses everything after this reply, so switch before reading any further
+        boolean compressed = messageContent.equals(DeflateCodec.NAME);
+        if (compressed) {
+            connection.startCompression();
+        }
+
+        compressReplies.complete(compressed);
+    }
+
+    /**
+     * Send the user's nickname to the server 
+     * @param nickname the user's nickname
+     * @return a future that completes when the nickname is set
+     */
+    private CompletableFuture<String> sendNickname(String nickname) {
+        // Queue future for the reply before sending, so a fast reply cannot miss it
+        CompletableFuture<String> nicknameFuture = nicknameReplies.add();
+    
+        try {
+            // Send the nickname to the server 
+            send("NICK " + nickname);
+
+        } catch (Exception e) {
+            nicknameReplies.remove(nicknameFuture);
+            handleException(e, nicknameFuture);
+        } finally {
+            return nicknameFuture;
+        }
+    }
+   
+    /**
+     * Handle the server's response to setting the user's nickname 
+     * @param messageContent the server's response
+     */
+    private void onNickname(String messageContent) {
+        // Extract the nickname from the server's response 
+        String nickname = messageContent.split(", ")[1];
+        this.nickname = nickname;
+    
+        // TODO should this be the nickname or the message content?
+        // Complete the oldest nickname request with the nickname
+        nicknameReplies.complete(messageContent);
+    }
+    
+    /**
+     * Getter for the user's nickname 
+     * @return the user's nickname
+     */
+    public String getNickname() {
+        return nickname;
+    }
+    
+    // Most lines waiting to be sent at once, and what to do with lines sent beyond that
+    private int outboundCapacity = OutboundQueue.DEFAULT_CAPACITY;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.FAIL;
+    // Most lines sent per second once a burst is used up, so the server doesn't kick the client for flooding
+    private double sendRate = OutboundQueue.DEFAULT_RATE;
+    private int sendBurst = OutboundQueue.DEFAULT_BURST;
+
+    /**
+     * Configure the queue of lines waiting to be sent, taking effect from the next connect
+     * @param capacity most lines that can wait to be sent at once
+     * @param policy what to do with lines sent while the queue is full
+     */
+    public void setOutboundLimits(int capacity, OverflowPolicy policy) {
+        this.outboundCapacity = capacity;
+        this.overflowPolicy = policy;
+    }
+
+    /**
+     * Configure how fast lines are sent to the server, taking effect from the next connect
+     * PONG and QUIT are never held back, and JOIN, PART, NAMES and LIST go ahead of chat messages
+     * @param linesPerSecond most lines sent per second once a burst is used up, or 0 for no limit
+     * @param burst most lines sent at full speed
+     */
+    public void setSendRate(double linesPerSecond, int burst) {
+        this.sendRate = linesPerSecond;
+        this.sendBurst = burst;
+    }
+
+    /**
+     * Getter for the queue of lines waiting to be sent (e.g for its depth and wait time)
+     * @return the outbound queue, or null if never connected
+     */
+    public OutboundQueue getOutboundQueue() {
+        return connection == null ? null : connection.getOutboundQueue();
+    }
+
+    /**
+     * Send a line to the server
+     * Returns as soon as the line is queued, the connection's event loop writes it
+     * @param line the line to send
+     * @return true if the line was queued, false if it was chat dropped because too many lines are waiting
+     * @throws IOException if the connection is closed, or the line was dropped and isn't chat
+     */
+    private boolean send(String line) throws IOException {
+        return connection.send(line);
+    }
+
+    // Tokenizer reused for every line from the server (only used by the connection's event loop)
+    private LineTokenizer tokenizer = new LineTokenizer();
+
+    // Flag to print every line from the server to the console, enabled with -Dchatclient.logTraffic=true
+    private static final boolean LOG_TRAFFIC = Boolean.getBoolean("chatclient.logTraffic");
+
+    /**
+     * Handle a line read from the server by the connection engine
+     * @param line characters of the line, only valid until this returns
+     * @param length number of characters in the line
+     */
+    public void onLine(char[] line, int length) {
+        // Any line shows the connection is alive, so the keepalive can stay quiet
+        lastReceivedNanos = System.nanoTime();
+
+        // Time messages from when their bytes came off the socket, not from when their turn to be handled came
+        Connection current = connection;
+        lineReceivedNanos = current != null && current.getReadNanos() != 0 ? current.getReadNanos() : lastReceivedNanos;
+
+        try {
+            tokenizer.tokenize(line, length);
+            handleServerMessage(tokenizer);
+        } catch (Exception e) {
+            handleException(e);
+        }
+    }
+
+    /**
+     * Handle the connection to the server closing
+     * @param cause the error that closed the connection, or null if it closed normally
+     */
+    public void onClosed(Exception cause) {
+        if (cause != null) {
+            handleException(cause);
+        }
+
+        // Whichever side closed the connection, this is the only way to the closed state
+        terminate(cause);
+    }
+
+    // When the line being handled was read from the socket, only used on the loop thread
+    private long lineReceivedNanos;
+
+    // Handlers for each command and reply code the server sends
+    private CommandRegistry commandHandlers = new CommandRegistry();
+
+    /**
+     * Register a handler for a command or reply code from the server, replacing any existing handler
+     * @param command the command or reply code (e.g PRIVMSG or REPLY_NAMES)
+     * @param handler the handler to call for lines with that code
+     */
+    public void registerHandler(String command, CommandHandler handler) {
+        commandHandlers.register(command, handler);
+    }
+
+    /**
+     * Register the handlers for the commands and replies of the server protocol
+     */
+    private void registerDefaultHandlers() {
+        // Replies from the server
+        registerHandler("REPLY_NAMES", message -> onNamesInChannel(message.content()));
+        registerHandler("REPLY_NICK", message -> onNickname(message.content()));
+        registerHandler("REPLY_LIST", message -> onOfferedChannels(message.content()));
+        registerHandler("REPLY_TIME", message -> onTime(message.content()));
+        registerHandler("REPLY_INFO", message -> onInfo(message.content()));
+        registerHandler("REPLY_COMPRESS", message -> onCompress(message.content()));
+        registerHandler("PONG", message -> onPong(message.content()));
+        registerHandler("ERROR", message -> onError(message.content()));
+
+        // Notifications from the server
+        // If message is self-referential, get client to perform the action (e.g quit should disconnect the client)
+        // Otherwise, tell client about change performed by user (e.g quit should tell serverModel that a different user has left) 
+        registerHandler("QUIT", message -> {
+            if (!message.hasPrefix()) {
+                return;
+            }
+
+            if (refersToSelf(message)) {
+                selfQuit();
+            } else {
+                onQuit(message.prefix());
+            }
+        });
+        registerHandler("JOIN", message -> {
+            if (!message.hasPrefix()) {
+                return;
+            }
+
+            if (refersToSelf(message)) {
+                onJoinChannel(message.target());
+            } else {
+                onJoinChannel(message.prefix(), message.target());
+            }
+        });
+        registerHandler("PART", message -> {
+            if (!message.hasPrefix()) {
+                return;
+            }
+
+            if (refersToSelf(message)) {
+                onPartChannel(message.target());
+            } else {
+                onPartChannel(message.prefix(), message.target());
+            }
+        });
+        registerHandler("PRIVMSG", message -> {
+            if (!message.hasPrefix()) {
+                return;
+            }
+
+            String sender = refersToSelf(message) ? this.nickname : message.prefix();
+            onMessage(sender, message.target(), message.trailing(), lineReceivedNanos);
+        });
+    }
+
+    /**
+     * Check if a notification was caused by the client
+     * @param message the tokenized notification
+     * @return true if the prefix is the client's nickname, false otherwise
+     */
+    private boolean refersToSelf(LineTokenizer message) {
+        return message.prefixEquals(this.nickname);
+    }
+
+    /**
+     * Handle a message from the server
+     * @param serverMessage the tokenized message from the server
+     */
+    private void handleServerMessage(LineTokenizer serverMessage) {
+        if (LOG_TRAFFIC) {
+            System.out.println("FROM | " + LocalDateTime.now().toString() + " | " + toString() + " | " + serverMessage);
+        }
+
+        // Look up the handler for the message code (e.g PRIVMSG or REPLY_NAMES) in one step
+        CommandHandler handler = commandHandlers.lookup(serverMessage);
+
+        // Codes without a handler are ignored
+        if (handler != null) {
+            handler.handle(serverMessage);
+        }
+    }
+
+    // Future for disconnecting from the server
+    private CompletableFuture<Void> disconnectFuture;
+
+    /**
+     * Disconnect from the server
+     * @return a future that completes when the connection is closed
+     */
+    public CompletableFuture<Void> disconnect() {
+        // Client asked to leave, so don't reconnect, and stop any reconnect already waiting
+        quitRequested = true;
+
+        synchronized (this) {
+            if (reconnectTask != null) {
+                reconnectTask.cancel(false);
+                reconnectTask = null;
+            }
+
+            // Never connected, so there is nothing to disconnect from
+            if (disconnectFuture == null) {
+                disconnectFuture = CompletableFuture.completedFuture(null);
+            }
+
+            // Already closed or closing (e.g disconnect called twice), so wait on the same future
+            if (state == ConnectionState.CLOSING || state == ConnectionState.CLOSED) {
+                return disconnectFuture;
+            }
+        }
+
+        // Still connecting, so there is no socket to send QUIT on yet, just abandon the attempt
+        if (getState() == ConnectionState.CONNECTING) {
+            terminate(null);
+            return disconnectFuture;
+        }
+
+        try {
+            // Send a quit message to the server
+            send("QUIT");
+            // Disconnect from the server
+            selfQuit();
+
+        } catch (Exception e) {
+            handleException(e, disconnectFuture);
+        } finally {
+            return disconnectFuture;
+        }
+    }
+
+    /**
+     * Handle recieving disconnect message from server
+     */
+    private void selfQuit() {
+        // Close the connection once anything already queued (e.g QUIT) has been written
+        // The connection engine calls onClosed once the socket is closed, which completes the disconnect
+        if (setState(ConnectionState.CLOSING) && connection != null) {
+            connection.closeAfterFlush();
+        }
+
+        // Nothing more should be sent, so stop sampling the server's clock
+        clock.stop();
+        KeepaliveService.shared().unregister(this);
+    }
+
+    /**
+     * Release everything tied to the connection once it has closed
+     * Only runs once per connection, however the connection closed
+     * @param cause the error that closed the connection, or null if it closed normally
+     */
+    private void terminate(Exception cause) {
+        if (!setState(ConnectionState.CLOSED)) {
+            return;
+        }
+
+        // Stop sampling the server's clock
+        clock.stop();
+        KeepaliveService.shared().unregister(this);
+
+        // Remove self from list of users in the server
+        quitUpdateModel(this.nickname);
+
+        // No more replies will arrive, so release everyone still waiting on one
+        Exception reason = cause != null ? cause : new EOFException("Disconnected from " + toString());
+        failPendingReplies(reason);
+
+        // If the connection dropped rather than the client quitting, try to get it back
+        // Otherwise the client is done with the server, so write out and close every target's stored history
+        // before anyone waiting on the disconnect (e.g a shutdown hook) carries on
+        if (!scheduleReconnect()) {
+            closeTargets();
+        }
+
+        // Connection closed before it was ready
+        if (!connectFuture.isDone()) {
+            connectFuture.completeExceptionally(reason);
+        }
+
+        // Complete the disconnect future
+        if (!disconnectFuture.isDone()) {
+            disconnectFuture.complete(null);
+        }
+    }
+
+    /**
+     * Fail all requests still waiting on a reply from the server
+     * @param e the reason the requests failed
+     */
+    private void failPendingReplies(Exception e) {
+        nicknameReplies.failAll(e);
+        joinChannelReplies.failAll(e);
+        partChannelReplies.failAll(e);
+        namesReplies.failAll(e);
+        channelsReplies.failAll(e);
+        timeReplies.failAll(e);
+        infoReplies.failAll(e);
+        pongReplies.failAll(e);
+        compressReplies.failAll(e);
+    }
+
+    /**
+     * Handle a user quitting the server
+     * @param nickname the nickname of the user who quit
+     */ 
+    private void onQuit(String nickname) {
+        // For all listeners of target events
+        listenerDispatch.execute(() -> {
+            for (TargetListener listener : targetListeners) {
+                // Notify the listener that a user has quit
+                listener.onQuit(nickname);
+            }
+        });
+        
+        // Remove the user who quit from the model
+        quitUpdateModel(nickname);
+    }
+
+    /**
+     * Remove a user who has quit from the model
+     * @param nickname the nickname of the user who quit
+     */
+    private void quitUpdateModel(String nickname) {
+        // Remove the user who quit from the list of targets
+        removeTarget(nickname);
+
+        // Remove the user who quit from every channel they were in
+        for (Target target : targets.values()) {
+            if (target.isChannel()) {
+                ((Channel) target).removeUser(nickname);
+            }
+        }
+    }
+
+    // Requests waiting on the server to confirm joining a channel, keyed by channel name
+    private PendingReplies<Channel> joinChannelReplies = new PendingReplies<>();
+
+    /**
+     * Join a channel in the server
+     * @param channel the name of the channel to join
+     * @return a future that completes when the channel is joined
+     */
+    public CompletableFuture<Channel> joinChannel(String channel) {
+        // Queue future for joining this channel before sending
+        CompletableFuture<Channel> joinChannelFuture = joinChannelReplies.add(channel);
+
+        try {
+            // Send a join message to the server
+            send("JOIN " + channel);
+
+        } catch (Exception e) {
+            joinChannelReplies.remove(channel, joinChannelFuture);
+            handleException(e, joinChannelFuture);
+        }
+
+        return joinChannelFuture;
+    }
+
+
+    /**
+     * Handle the server's response to the client joining a channel
+     * @param channelName the name of the channel that was joined
+     */
+    private void onJoinChannel(String channelName) {
+        // Share a request for the channel's users already in flight (e.g from rejoining after a reconnect)
+        CompletableFuture<String[]> namesFuture = namesReplies.newest(channelName);
+        if (namesFuture == null) {
+            // Attempt to get all users in the new channel
+            namesFuture = getNamesInChannel(channelName);
+        }
+
+        // Continue on the dispatcher in order with other events, so whoever joined isn't run on the event loop
+        namesFuture.thenAcceptAsync(users -> {
+            Channel channel;
+            Target existing = targets.get(channelName);
+
+            // If rejoining, keep the existing channel (and its history), which already has the new users
+            if (existing != null && existing.isChannel()) {
+                channel = (Channel) existing;
+
+            // Otherwise create a new channel with the users in it
+            } else {
+                channel = new Channel(this, channelName, users);
+            }
+            channel.setJoined(true);
+
+            // Add the channel to the list of targets
+            putTarget(channel);
+            
+            // Complete the oldest request to join this channel
+            joinChannelReplies.complete(channelName, channel);
+        }, listenerDispatch);
+    }
+
+    /**
+     * Handle a different user joining a channel
+     * @param nickname the nickname of the user who joined
+     * @param channelName the name of the channel that was joined
+     */
+    private void onJoinChannel(String nickname, String channelName) {
+        // Get the channel that was joined
+        Channel channel = getChannel(channelName);
+        
+        // If the channel does not exist, return
+        if (channel == null) {
+            return;
+        }
+
+        // Add the user who joined to the channel
+        channel.addUser(nickname);
+
+        // Notify all target listeners of the user joining the channel 
+        listenerDispatch.execute(() -> {
+            for (TargetListener listener : targetListeners) {
+                listener.onJoinChannel(nickname, channel);
+            }
+        });
+    }
+
+    // Requests waiting on the server to confirm leaving a channel, keyed by channel name
+    private PendingReplies<Void> partChannelReplies = new PendingReplies<>();
+    
+    /**
+     * Part (leave) a channel in the server 
+     * @param channel the name of the channel to leave
+     * @return a future that completes when the channel is left
+     */
+    public CompletableFuture<Void> partChannel(String channel) {
+        // Queue future for leaving this channel before sending
+        CompletableFuture<Void> partChannelFuture = partChannelReplies.add(channel);
+        try {
+            // Send a part message to the server 
+            send("PART " + channel);
+
+        } catch (Exception e) {
+            partChannelReplies.remove(channel, partChannelFuture);
+            handleException(e, partChannelFuture);
+        } finally {
+            return partChannelFuture;
+        }
+    }
+
+    /**
+     * Handle the server's response to the client leaving a channel
+     * @param channelName the name of the channel that was left
+     */
+    private void onPartChannel(String channelName) {
+        // Remove the channel from the list of targets
+        removeTarget(channelName);
+
+        // Complete the oldest request to leave this channel
+        partChannelReplies.complete(channelName, null);
+    }
+
+    /**
+     * Handle a different user leaving a channel
+     * @param nickname the nickname of the user who left
+     * @param channelName the name of the channel that was left
+     */
+    private void onPartChannel(String nickname, String channelName) {
+        // Get the channel that was left
+        Channel channel = getChannel(channelName);
+
+        // If the channel does not exist, return
+        if (channel == null) {
+            return;
+        }
+
+        // Remove the user who left from the channel
+        channel.removeUser(nickname);
+
+        // Notify all target listeners of the user leaving the channel
+        listenerDispatch.execute(() -> {
+            for (TargetListener listener : targetListeners) {
+                listener.onPartChannel(nickname, channel);
+            }
+        });
+    }
+
+    /**
+     * Send a message to a target in the server
+     * @param target the name of the target to send the message to
+     * @param messageContent the content of the message
+     */
+    public void sendMessage(String target, String messageContent) {
+        try {
+            // Send a message to the server, unless too many are already waiting to be sent
+            if (!send("PRIVMSG " + target + " :" + messageContent)) {
+                return;
+            }
+
+            // If the target isn't a channel (i.e. a user), server will not send a message back
+            // TODO replace with isChannel() check
+            if (!target.startsWith("#")) {
+                // Create a message object for the client without waiting for server response
+                // Handled on the event loop like messages from the server, as storing it is I/O the caller (e.g the EDT) shouldn't wait on
+                String sender = nickname;
+                connection.execute(() -> onMessage(sender, target, messageContent, 0));
+            }
+
+        } catch (Exception e) {
+            handleException(e);
+        }
+    }
+
+    /**
+     * Handle client recieving a message from a target in the server 
+     * @param sender the nickname of the user who sent the message
+     * @param targetName the name of the target the message was sent to
+     * @param messageContent the content of the message
+     * @param receivedNanos when the message was read from the socket (from System.nanoTime), or 0 if the client sent it
+     */
+    private void onMessage(String sender, String targetName, String messageContent, long receivedNanos) {
+        // Create a message object for the client, stamped with the estimated server time
+        Message message = new Message(sender, targetName, messageContent, clock.now(), toString());
+
+        // Time messages from the server through each stage on their way to the screen
+        if (receivedNanos != 0) {
+            PipelineLatency latency = PipelineLatency.shared();
+            latency.record(message, MessageStage.RECEIVED, receivedNanos);
+            latency.record(message, MessageStage.PARSED);
+        }
+
+        // Get the target the message was sent to
+        Target target = targets.get(message.getTarget());
+
+        // If the target does not exist (e.g new user DMing the client), create it
+        // Channel traffic can arrive before the join is confirmed, or after leaving, so the channel is created without
+        // being joined; a confirmed join marks it joined, and until then it is neither listed nor joined on reconnect
+        if (target == null && message.getTarget().startsWith("#")) {
+            target = new Channel(this, message.getTarget(), new String[0]);
+            putTarget(target);
+        } else if (target == null) {
+            target = new Target(this, message.getTarget());
+            putTarget(target);
+        }
+
+        // Add message to target's message history
+        target.addMessage(message);
+
+        // Notify target listeners
+        listenerDispatch.execute(() -> {
+            for (TargetListener listener : targetListeners) {
+                listener.onMessageRecieved(message);
+            }
+        });
+    }
+
+    // Requests waiting on the users in a channel, keyed by channel name
+    private PendingReplies<String[]> namesReplies = new PendingReplies<>();
+
+    /**
+     * Get all users in a channel
+     * @param channel the name of the channel to get the users of
+     * @return a future that completes with the users in the channel
+     */
+    public CompletableFuture<String[]> getNamesInChannel(String channel) {
+        // Queue future for this channel's users before sending
+        CompletableFuture<String[]> namesFuture = namesReplies.add(channel);
+
+        try {
+            // Send a names message to the server
+            send("NAMES " + channel);
+
+        } catch (Exception e) {
+            namesReplies.remove(channel, namesFuture);
+            handleException(e, namesFuture);
+        } finally {
+            return namesFuture;
+        }
+    }
+
+    // Position of channel name in message content
+    private static int CHANNEL_INDEX_POSITION = 0;
+
+    /**
+     * Handle the server's response to getting all users in a channel
+     * @param messageContent the content of the server's response
+     */
+    private void onNamesInChannel(String messageContent) {
+        // Split the message content into an array of users
+        String[] splitMessageContent = messageContent.split(" ");
+
+        // Get the channel name from the message content
+        String channelName = splitMessageContent[CHANNEL_INDEX_POSITION];
+    
+        // Get the channel from the list of targets
+        Channel channel = getChannel(channelName);
+
+        // Get all users in the channel from the message content
+        String[] users = Arrays.copyOfRange(splitMessageContent, CHANNEL_INDEX_POSITION + 1, splitMessageContent.length - 1);
+
+        // If the channel exists, update the users in the channel
+        if (channel != null) {
+            channel.overwriteUsers(users);
+        }
+
+        // Complete the oldest request for this channel's users
+        namesReplies.complete(channelName, users);
+    }
+
+    // Requests waiting on all channels offered by the server
+    private PendingReplies<String[]> channelsReplies = new PendingReplies<>();
+
+    /**
+     * Get all channels offered by the server
+     * @return a future that completes with the channels offered by the server
+     */
+    public CompletableFuture<String[]> getOfferedChannels() {
+        // Queue future for the channel list before sending
+        CompletableFuture<String[]> channelsFuture = channelsReplies.add();
+
+        try {
+            // Send a list message to the server
+            send("LIST");
+
+        } catch (Exception e) {
+            channelsReplies.remove(channelsFuture);
+            handleException(e, channelsFuture);
+        } finally {
+            return channelsFuture;
+        }
+    }
+
+    /**
+     * Handle the server's response to getting all channels offered by the server
+     * @param messageContent the content of the server's response
+     */
+    private void onOfferedChannels(String messageContent) {
+        // Split the message content into an array of channels
+        String[] channels = messageContent.split(" ");
+
+        // Complete the oldest request for the channels offered by the server
+        channelsReplies.complete(channels);
+    }
+
+    // Requests waiting on the server's time
+    private PendingReplies<String> timeReplies = new PendingReplies<>();
+
+    /**
+     * Get the server's time
+     * @return a future that completes with the server's time
+     */
+    public CompletableFuture<String> getTimeFuture() {
+        // Queue future for the server's time before sending
+        CompletableFuture<String> timeFuture = timeReplies.add();
+
+        try {
+            // Send a time message to the server
+            send("TIME");
+
+        } catch (Exception e) {
+            timeReplies.remove(timeFuture);
+            handleException(e, timeFuture);
+        } finally {
+            return timeFuture;
+        }
+    }
+
+    /**
+     * Handle the server's response to getting the server's time
+     * @param messageContent the content of the server's response
+     */
+    private void onTime(String messageContent) {
+        // Complete the oldest request for the server's time
+        timeReplies.complete(messageContent);
+    }
+    
+    // Requests waiting on the server's information
+    private PendingReplies<String> infoReplies = new PendingReplies<>();
+
+    /**
+     * Get the server's information
+     * @return a future that completes with the server's information
+     */
+    public CompletableFuture<String> getInfo() {
+        // Queue future for the server's information before sending
+        CompletableFuture<String> infoFuture = infoReplies.add();
+
+        try {
+            // Send an info message to the server
+            send("INFO");
+
+        } catch (Exception e) {
+            infoReplies.remove(infoFuture);
+            handleException(e, infoFuture);
+        } finally {
+            return infoFuture;
+        }
+    }
+
+    /**
+     * Handle the server's response to getting the server's information
+     * @param messageContent the content of the server's response
+     */
+    private void onInfo(String messageContent) {
+        // Complete the oldest request for the server's information
+        infoReplies.complete(messageContent);
+    }
+
+    // Pings waiting on a pong from the server
+    private PendingReplies<String> pongReplies = new PendingReplies<>();
+
+    /**
+     * Send a ping message to the server
+     * @param messageContent the content of the ping message
+     * @return a future that completes with the server's response
+     */
+    public CompletableFuture<String> ping(String messageContent) {
+        // Queue future for the pong before sending, keyed by the content the pong will echo
+        CompletableFuture<String> pongFuture = pongReplies.add(messageContent);
+
+        try {
+            // Send a ping message to the server with the message content
+            send("PING " + messageContent);
+
+        } catch (Exception e) {
+            pongReplies.remove(messageContent, pongFuture);
+            handleException(e, pongFuture);
+        } finally {
+            return pongFuture;
+        }
+    }
+
+    /**
+     * Handle the server's response (pong) to a ping message
+     * @param messageContent the content of the server's response
+     */
+    private void onPong(String messageContent) {
+        // Complete the oldest ping with the same content (so a late pong can't answer a newer ping)
+        pongReplies.complete(messageContent, messageContent);
+    }
+
+    // Interval the connection may be idle before it is pinged, also how long to wait for each pong
+    private Duration keepaliveInterval = Duration.ofSeconds(Long.getLong("chatclient.keepaliveSeconds", 30));
+    // Number of pongs in a row that may be missed before the connection is declared dead
+    private int maxMissedPongs = Integer.getInteger("chatclient.keepaliveMissed", 3);
+
+    // Local time the last line was received from the server
+    private volatile long lastReceivedNanos;
+    // Keepalive ping waiting on a pong, and when it was sent (only used by the keepalive service)
+    private CompletableFuture<String> keepalivePing;
+    private String keepaliveToken;
+    private long keepaliveSentNanos;
+    // Number of keepalive pings sent so far, to give each a unique token
+    private long keepaliveCount;
+    // Number of keepalive pings in a row that went unanswered
+    private volatile int missedPongs;
+
+    // Round trip times of keepalive pings
+    private LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * Configure the keepalive
+     * @param interval how long the connection may be idle before it is pinged, or zero to never ping
+     * @param maxMissedPongs number of pongs in a row that may be missed before the connection is declared dead
+     */
+    public void setKeepalive(Duration interval, int maxMissedPongs) {
+        this.keepaliveInterval = interval;
+        this.maxMissedPongs = Math.max(1, maxMissedPongs);
+    }
+
+    /**
+     * Getter for the round trip times of keepalive pings
+     * @return histogram of round trip times
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Ping the server if the connection has been idle, and declare it dead if too many pings went unanswered
+     * Called periodically by the keepalive service
+     * @param nowNanos current System.nanoTime()
+     */
+    void checkKeepalive(long nowNanos) {
+        if (getState() != ConnectionState.READY || keepaliveInterval.isZero()) {
+            return;
+        }
+        long intervalNanos = keepaliveInterval.toNanos();
+
+        if (keepalivePing != null) {
+            // Still waiting on the pong
+            if (!keepalivePing.isDone() && nowNanos - keepaliveSentNanos < intervalNanos) {
+                return;
+            }
+
+            // Pong never came, so stop waiting for it
+            if (!keepalivePing.isDone()) {
+                pongReplies.remove(keepaliveToken, keepalivePing);
+                missedPongs++;
+            }
+            keepalivePing = null;
+
+            // Too many missed, so the connection is half open: close it so reconnecting can take over
+            if (missedPongs >= maxMissedPongs) {
+                connection.fail(new SocketTimeoutException("Server did not reply to " + missedPongs + " pings"));
+                return;
+            }
+
+            // Ping again straight away after a miss
+            if (missedPongs > 0) {
+                sendKeepalive(nowNanos);
+                return;
+            }
+        }
+
+        // Only ping a connection that has gone quiet
+        if (nowNanos - lastReceivedNanos >= intervalNanos) {
+            sendKeepalive(nowNanos);
+        }
+    }
+
+    /**
+     * Send a keepalive ping, recording its round trip time when the pong arrives
+     * @param nowNanos current System.nanoTime()
+     */
+    private void sendKeepalive(long nowNanos) {
+        keepaliveCount++;
+        keepaliveToken = "keepalive-" + keepaliveCount;
+        keepaliveSentNanos = nowNanos;
+
+        keepalivePing = ping(keepaliveToken);
+        keepalivePing.thenAccept(pong -> {
+            latency.record(System.nanoTime() - nowNanos);
+            missedPongs = 0;
+        });
+    }
+
+    /**
+     * Handle an error message from the server
+     * @param messageContent the content of the error message
+     */
+    private void onError(String messageContent) {
+        // Server doesn't support compression, so carry on without it
+        if (compressReplies.size() > 0) {
+            compressReplies.complete(false);
+            return;
+        }
+
+        // If setting nickname fails, connection is invalid so disconnect
+        // Code is 'Nick' not 'NICK' because it is the first word in nickname error message
+        if (messageContent.contains("Nick")) {
+            disconnect();
+        }
+        
+        // Throw and handle a RuntimeException with the server's error message
+        handleException(new RuntimeException(messageContent));
+    }
+
+    /**
+     * Getter for the host of the server
+     * @return the host of the server
+     */
+    public String getHost() {
+        return this.host;
+    }
+
+    /**
+     * Getter for the port of the server 
+     * @return the port of the server
+     */
+    public int getPort() {
+        return this.port;
+    }
+
+    /**
+     * Getter for the estimate of the server's clock (e.g to query its offset and jitter)
+     * @return the server's clock
+     */
+    public ServerClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Gets user-friendly string representation of the server
+     * @return the user-friendly string representation of the server
+     */
+    public String toString() {
+        return nickname + " | " + host + ":" + Integer.toString(port);
+    }
+
+    /**
+     * Getter for a channel in the server
+     * @param channelName the name of the channel
+     * @return the channel, or null if there is no channel with that name
+     */
+    private Channel getChannel(String channelName) {
+        Target target = targets.get(channelName);
+        return target != null && target.isChannel() ? (Channel) target : null;
+    }
+
+    /**
+     * Getter for all targets in server
+     * @return all targets in server
+     */
+    public Map<String, Target> getTargets() {
+        return targets;
+    }
+
+    /**
+     * Getter for just users in server
+     * @return all users in server
+     */
+    public Target[] getUsers() {
+        // Filter out channels from targets
+        return targets.values().stream()
+            .filter(target -> !(target.isChannel()))
+            .toArray(Target[]::new);
+    }
+
+    /**
+     * Getter for channels client has joined
+     * @return all channels client has joined
+     */
+    public Channel[] getJoinedChannels() {
+        // Filter out users (i.e non-channels) and channels only known from their traffic from targets
+        return targets.values().stream()
+            .filter(target -> target.isChannel() && ((Channel) target).isJoined()) 
+            .toArray(Channel[]::new); 
+    }
+
+    /**
+     * Add a target to the server
+     * @param target the target to add
+     */
+    public void addTarget(Target target) {
+        putTarget(target);
+    }
+
+    /**
+     * Add a target to the list of targets, closing any target of the same name it replaces
+     * @param target the target to add
+     */
+    private void putTarget(Target target) {
+        Target replaced = targets.put(target.getName(), target);
+        if (replaced != null && replaced != target) {
+            replaced.close();
+        }
+    }
+
+    /**
+     * Remove a target from the list of targets and close its stored history
+     * @param name the name of the target to remove
+     */
+    private void removeTarget(String name) {
+        Target removed = targets.remove(name);
+        if (removed != null) {
+            removed.close();
+        }
+    }
+
+    /**
+     * Remove and close every target (e.g once the client is done with the server), so their stores are released
+     */
+    private void closeTargets() {
+        for (String name : new ArrayList<>(targets.keySet())) {
+            removeTarget(name);
+        }
+    }
+}
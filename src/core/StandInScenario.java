@@ -0,0 +1,163 @@
+/**
+ * Script of simulated activity for the stand-in server to generate, for load and soak testing the client
+ * Simulated users only exist on the server: they fill channels (and so NAMES replies), chat and come and go
+ */
+public class StandInScenario {
+    // Number of channels created up front, named #load-0, #load-1, ...
+    private int channels = 1;
+    // Number of simulated users in each channel, i.e the size of its NAMES reply
+    private int usersPerChannel = 10;
+    // Chat messages per second from simulated users, spread over all channels
+    private double messageRate = 10;
+    // Simulated users per second that leave a channel and are replaced by a newcomer (i.e a PART and a JOIN)
+    private double churnRate = 0;
+    // Length of each simulated chat message in characters
+    private int messageLength = 60;
+    // How long the scenario runs for, in seconds, or 0 to run until the server stops
+    private long durationSeconds = 0;
+
+    /**
+     * Build a scenario from command line style options, e.g --channels 10 --users 200 --rate 1000 --churn 5
+     * Options not given keep their defaults
+     * @param args the options, as pairs of name and value
+     * @return the scenario
+     */
+    public static StandInScenario parse(String[] args) {
+        StandInScenario scenario = new StandInScenario();
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+
+            switch (args[i]) {
+                case "--channels":
+                    scenario.setChannels(Integer.parseInt(value));
+                    break;
+                case "--users":
+                    scenario.setUsersPerChannel(Integer.parseInt(value));
+                    break;
+                case "--rate":
+                    scenario.setMessageRate(Double.parseDouble(value));
+                    break;
+                case "--churn":
+                    scenario.setChurnRate(Double.parseDouble(value));
+                    break;
+                case "--length":
+                    scenario.setMessageLength(Integer.parseInt(value));
+                    break;
+                case "--duration":
+                    scenario.setDurationSeconds(Long.parseLong(value));
+                    break;
+                default:
+                    // Leave other options (e.g --port) to whoever else reads the arguments
+            }
+        }
+
+        return scenario;
+    }
+
+    /**
+     * Getter for the number of channels
+     * @return number of channels created up front
+     */
+    public int getChannels() {
+        return channels;
+    }
+
+    /**
+     * Setter for the number of channels
+     * @param channels number of channels created up front
+     */
+    public void setChannels(int channels) {
+        this.channels = Math.max(0, channels);
+    }
+
+    /**
+     * Getter for the number of simulated users in each channel
+     * @return simulated users per channel
+     */
+    public int getUsersPerChannel() {
+        return usersPerChannel;
+    }
+
+    /**
+     * Setter for the number of simulated users in each channel
+     * @param usersPerChannel simulated users per channel
+     */
+    public void setUsersPerChannel(int usersPerChannel) {
+        this.usersPerChannel = Math.max(0, usersPerChannel);
+    }
+
+    /**
+     * Getter for the rate of simulated chat messages
+     * @return messages per second over all channels
+     */
+    public double getMessageRate() {
+        return messageRate;
+    }
+
+    /**
+     * Setter for the rate of simulated chat messages
+     * @param messageRate messages per second over all channels
+     */
+    public void setMessageRate(double messageRate) {
+        this.messageRate = Math.max(0, messageRate);
+    }
+
+    /**
+     * Getter for the rate of simulated users leaving and being replaced
+     * @return users replaced per second over all channels
+     */
+    public double getChurnRate() {
+        return churnRate;
+    }
+
+    /**
+     * Setter for the rate of simulated users leaving and being replaced
+     * @param churnRate users replaced per second over all channels
+     */
+    public void setChurnRate(double churnRate) {
+        this.churnRate = Math.max(0, churnRate);
+    }
+
+    /**
+     * Getter for the length of simulated chat messages
+     * @return characters per message
+     */
+    public int getMessageLength() {
+        return messageLength;
+    }
+
+    /**
+     * Setter for the length of simulated chat messages
+     * @param messageLength characters per message
+     */
+    public void setMessageLength(int messageLength) {
+        this.messageLength = Math.max(1, messageLength);
+    }
+
+    /**
+     * Getter for how long the scenario runs for
+     * @return duration in seconds, or 0 to run until the server stops
+     */
+    public long getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    /**
+     * Setter for how long the scenario runs for
+     * @param durationSeconds duration in seconds, or 0 to run until the server stops
+     */
+    public void setDurationSeconds(long durationSeconds) {
+        this.durationSeconds = Math.max(0, durationSeconds);
+    }
+
+    /**
+     * Summarise the scenario for display
+     * @return the scenario's settings
+     */
+    public String toString() {
+        return channels + " channels x " + usersPerChannel + " users, " + messageRate + " messages/s, "
+            + churnRate + " churn/s, " + messageLength + " chars/message"
+            + (durationSeconds > 0 ? ", for " + durationSeconds + "s" : "");
+    }
+}
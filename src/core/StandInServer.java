@@ -0,0 +1,647 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import java.nio.charset.StandardCharsets;
+
+import java.time.LocalDateTime;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Local stand-in for a chat server, speaking the protocol in the README over loopback
+ * Lets the client be tested and measured without a real server or network,
+ * optionally generating simulated activity from a scenario
+ */
+public class StandInServer implements Runnable {
+    // Port used when none is given
+    public static final int DEFAULT_PORT = 6667;
+    // How often a running scenario generates activity
+    private static final long SCENARIO_TICK_MILLIS = 10;
+
+    /**
+     * A channel and everyone in it
+     */
+    private static class Room {
+        // Name of the channel
+        private String name;
+        // Nicknames of every member, real or simulated, in the order they joined
+        private Set<String> names = ConcurrentHashMap.newKeySet();
+        // Connected members, who are sent the channel's traffic
+        private Set<ClientHandler> clients = ConcurrentHashMap.newKeySet();
+        // Simulated members, only used by the scenario's thread
+        private List<String> simulated = new ArrayList<>();
+
+        /**
+         * Constructor for an empty channel
+         * @param name name of the channel
+         */
+        private Room(String name) {
+            this.name = name;
+        }
+    }
+
+    // Socket accepting clients, bound to loopback only
+    private ServerSocket serverSocket;
+    // Registered clients by nickname
+    private ConcurrentHashMap<String, ClientHandler> clients = new ConcurrentHashMap<>();
+    // Channels by name
+    private ConcurrentHashMap<String, Room> rooms = new ConcurrentHashMap<>();
+
+    // Thread playing the scenario, while one is running
+    private volatile Thread scenarioThread;
+    // Number of simulated users created so far, to give each a unique nickname
+    private long simulatedCount;
+    // Lines sent to clients, for measuring throughput
+    private AtomicLong linesSent = new AtomicLong();
+
+    /**
+     * Constructor for a stand-in server
+     * @param port port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public StandInServer(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * Start accepting clients on a background thread
+     * @return this server
+     */
+    public StandInServer start() {
+        Thread thread = new Thread(this, "standin-accept");
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    /**
+     * Getter for the port the server is listening on
+     * @return the port
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Getter for the number of lines sent to clients so far
+     * @return lines sent
+     */
+    public long getLinesSent() {
+        return linesSent.get();
+    }
+
+    /**
+     * Stop accepting clients and stop any running scenario
+     */
+    public void close() {
+        stopScenario();
+
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Nothing more can be done with a socket that fails to close
+        }
+    }
+
+    /**
+     * Accept clients until closed, each handled on its own thread
+     */
+    public void run() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread thread = new Thread(new ClientHandler(socket), "standin-client");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                // Closing the server socket ends the loop
+            }
+        }
+    }
+
+    /**
+     * Run a stand-in server in the foreground
+     * @param args optionally --port followed by the port, then any scenario options (see StandInScenario.parse)
+     * @throws IOException if the port cannot be bound
+     */
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        boolean scripted = false;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--port")) {
+                port = Integer.parseInt(args[i + 1]);
+            } else {
+                scripted = true;
+            }
+        }
+
+        StandInServer server = new StandInServer(port);
+        System.out.println("Stand-in server listening on port " + server.getPort());
+
+        // Only generate activity if asked to
+        if (scripted) {
+            StandInScenario scenario = StandInScenario.parse(args);
+            System.out.println("Running scenario: " + scenario);
+            server.runScenario(scenario);
+        }
+
+        server.run();
+    }
+
+    /**
+     * Create the scenario's channels and simulated users, then generate its activity on a background thread
+     * Replaces any scenario already running
+     * @param scenario the scenario to run
+     */
+    public synchronized void runScenario(StandInScenario scenario) {
+        stopScenario();
+
+        // Fill the channels up front, so NAMES replies have the scripted size from the start
+        List<Room> scenarioRooms = new ArrayList<>();
+        for (int i = 0; i < scenario.getChannels(); i++) {
+            Room room = room("#load-" + i);
+            while (room.simulated.size() < scenario.getUsersPerChannel()) {
+                String name = newSimulatedName();
+                room.simulated.add(name);
+                room.names.add(name);
+            }
+            scenarioRooms.add(room);
+        }
+
+        Thread thread = new Thread(() -> playScenario(scenario, scenarioRooms), "standin-scenario");
+        thread.setDaemon(true);
+        scenarioThread = thread;
+        thread.start();
+    }
+
+    /**
+     * Stop generating activity, leaving the simulated users where they are
+     */
+    public synchronized void stopScenario() {
+        Thread thread = scenarioThread;
+        scenarioThread = null;
+
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Generate a scenario's messages and churn at its scripted rates until stopped or its duration is up
+     * @param scenario the scenario to play
+     * @param scenarioRooms the scenario's channels
+     */
+    private void playScenario(StandInScenario scenario, List<Room> scenarioRooms) {
+        if (scenarioRooms.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        long end = scenario.getDurationSeconds() > 0 ? start + scenario.getDurationSeconds() * 1_000_000_000L : Long.MAX_VALUE;
+        long last = start;
+        // Fractions of a message or user change owed from earlier ticks
+        double messagesDue = 0;
+        double churnDue = 0;
+
+        String filler = filler(scenario.getMessageLength());
+        long messageCount = 0;
+
+        while (Thread.currentThread() == scenarioThread && System.nanoTime() < end) {
+            long now = System.nanoTime();
+            double elapsedSeconds = (now - last) / 1e9;
+            last = now;
+
+            // Catch up on everything owed since the last tick, so rates hold even if a tick runs late
+            messagesDue += scenario.getMessageRate() * elapsedSeconds;
+            churnDue += scenario.getChurnRate() * elapsedSeconds;
+
+            while (messagesDue >= 1) {
+                messagesDue--;
+                Room room = scenarioRooms.get(ThreadLocalRandom.current().nextInt(scenarioRooms.size()));
+                simulateMessage(room, messageCount++, filler);
+            }
+            while (churnDue >= 1) {
+                churnDue--;
+                simulateChurn(scenarioRooms.get(ThreadLocalRandom.current().nextInt(scenarioRooms.size())));
+            }
+
+            try {
+                Thread.sleep(SCENARIO_TICK_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Send a chat message from a random simulated member of a channel
+     * @param room the channel
+     * @param count number of the message, so messages differ
+     * @param filler text making up the rest of the message
+     */
+    private void simulateMessage(Room room, long count, String filler) {
+        // Nobody real to send it to, so don't bother building it
+        if (room.simulated.isEmpty() || room.clients.isEmpty()) {
+            return;
+        }
+
+        String sender = room.simulated.get(ThreadLocalRandom.current().nextInt(room.simulated.size()));
+        String text = "message " + count + " " + filler;
+        broadcast(room, ":" + sender + " PRIVMSG " + room.name + " :" + text.substring(0, Math.min(text.length(), filler.length())));
+    }
+
+    /**
+     * Replace a random simulated member of a channel with a newcomer
+     * @param room the channel
+     */
+    private void simulateChurn(Room room) {
+        if (!room.simulated.isEmpty()) {
+            // Swap the leaver with the last member, so removing is constant time
+            int leaver = ThreadLocalRandom.current().nextInt(room.simulated.size());
+            String name = room.simulated.get(leaver);
+            room.simulated.set(leaver, room.simulated.get(room.simulated.size() - 1));
+            room.simulated.remove(room.simulated.size() - 1);
+
+            room.names.remove(name);
+            broadcast(room, ":" + name + " PART " + room.name);
+        }
+
+        String name = newSimulatedName();
+        room.simulated.add(name);
+        room.names.add(name);
+        broadcast(room, ":" + name + " JOIN " + room.name);
+    }
+
+    /**
+     * Create a unique nickname for a simulated user
+     * @return the nickname
+     */
+    private synchronized String newSimulatedName() {
+        return "sim" + (simulatedCount++);
+    }
+
+    /**
+     * Build text to pad simulated messages with
+     * @param length number of characters
+     * @return the text
+     */
+    private static String filler(int length) {
+        String words = "the quick brown fox jumps over the lazy dog ";
+        StringBuilder filler = new StringBuilder(length);
+        while (filler.length() < length) {
+            filler.append(words);
+        }
+        return filler.substring(0, length);
+    }
+
+    /**
+     * Getter for a channel, created if it doesn't exist yet
+     * @param name the channel's name
+     * @return the channel
+     */
+    private Room room(String name) {
+        return rooms.computeIfAbsent(name, Room::new);
+    }
+
+    /**
+     * Send a line to every connected member of a channel
+     * @param room the channel
+     * @param line the line to send
+     */
+    private void broadcast(Room room, String line) {
+        for (ClientHandler member : room.clients) {
+            try {
+                member.send(line);
+            } catch (IOException e) {
+                // A member that has gone away is removed by its own thread
+            }
+        }
+    }
+
+    /**
+     * A single connected client
+     */
+    private class ClientHandler implements Runnable {
+        // Socket connected to the client
+        private Socket socket;
+        // Bytes from the client, and those read but not yet split into lines
+        // (lines are split here rather than by a Reader, which would block on an InflaterInputStream waiting for more)
+        private InputStream input;
+        private byte[] readBuffer = new byte[8192];
+        private int readPosition;
+        private int readLimit;
+        // Bytes of the line being read
+        private ByteArrayOutputStream lineBytes = new ByteArrayOutputStream();
+        // Lines to the client, shared by every thread sending to it
+        private Writer writer;
+        // Stream under the writer, flushed after every line
+        private OutputStream output;
+        // Nickname, once registered
+        private String nickname;
+
+        /**
+         * Constructor for a client handler
+         * @param socket socket connected to the client
+         * @throws IOException if the socket's streams cannot be opened
+         */
+        private ClientHandler(Socket socket) throws IOException {
+            this.socket = socket;
+            input = socket.getInputStream();
+            output = socket.getOutputStream();
+            writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Handle lines from the client until it quits or disconnects
+         */
+        public void run() {
+            try {
+                String line;
+                while ((line = readLine()) != null) {
+                    if (!handle(line)) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                // Client went away
+            } finally {
+                leave();
+            }
+        }
+
+        /**
+         * Read the next line from the client
+         * @return the line without its terminator, or null once the client has disconnected
+         * @throws IOException if reading fails
+         */
+        private String readLine() throws IOException {
+            lineBytes.reset();
+
+            while (true) {
+                if (readPosition == readLimit) {
+                    readLimit = input.read(readBuffer);
+                    readPosition = 0;
+                    if (readLimit == -1) {
+                        return null;
+                    }
+                }
+
+                byte next = readBuffer[readPosition++];
+                if (next == '\n') {
+                    break;
+                }
+                lineBytes.write(next);
+            }
+
+            // Accept both \n and \r\n terminated lines
+            String line = lineBytes.toString(StandardCharsets.UTF_8);
+            return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+        }
+
+        /**
+         * Handle one line from the client
+         * @param line the line
+         * @return false once the client has quit, true otherwise
+         * @throws IOException if replying fails
+         */
+        private boolean handle(String line) throws IOException {
+            String[] parts = line.split(" ", 3);
+            String command = parts[0];
+            String argument = parts.length > 1 ? parts[1] : "";
+
+            // Only a few commands make sense before registering
+            if (nickname == null && !command.equals("NICK") && !command.equals("COMPRESS")
+                && !command.equals("PING") && !command.equals("QUIT")) {
+                send("ERROR Register with NICK first");
+                return true;
+            }
+
+            switch (command) {
+                case "COMPRESS":
+                    compress(argument);
+                    break;
+                case "NICK":
+                    nick(argument);
+                    break;
+                case "JOIN":
+                    join(argument);
+                    break;
+                case "PART":
+                    part(argument);
+                    break;
+                case "NAMES":
+                    names(argument);
+                    break;
+                case "LIST":
+                    send("REPLY_LIST :" + String.join(" ", rooms.keySet()));
+                    break;
+                case "PRIVMSG":
+                    privmsg(argument, parts.length > 2 ? parts[2] : "");
+                    break;
+                case "TIME":
+                    send("REPLY_TIME :" + LocalDateTime.now());
+                    break;
+                case "PING":
+                    send("PONG :" + line.substring(Math.min(line.length(), 5)));
+                    break;
+                case "INFO":
+                    send("REPLY_INFO :Stand-in chat server with " + clients.size() + " users in " + rooms.size() + " channels");
+                    break;
+                case "QUIT":
+                    send(":" + nickname + " QUIT");
+                    return false;
+                default:
+                    send("ERROR Unknown command " + command);
+            }
+            return true;
+        }
+
+        /**
+         * Register the client with a nickname
+         * Errors start with "Nick", which is how the client recognises a failed registration
+         * @param requested the nickname asked for
+         * @throws IOException if replying fails
+         */
+        private void nick(String requested) throws IOException {
+            if (nickname != null) {
+                send("ERROR Nickname cannot be changed after registering");
+            } else if (requested.isEmpty() || requested.startsWith("#") || requested.startsWith(":")) {
+                send("ERROR Nickname " + requested + " is not valid");
+            } else if (clients.putIfAbsent(requested, this) != null) {
+                send("ERROR Nickname " + requested + " is already in use");
+            } else {
+                nickname = requested;
+                send("REPLY_NICK :Welcome to the server, " + nickname);
+            }
+        }
+
+        /**
+         * Join a channel, creating it if it doesn't exist, and tell everyone in it (including the client)
+         * @param channel the channel's name
+         * @throws IOException if replying fails
+         */
+        private void join(String channel) throws IOException {
+            if (!channel.startsWith("#") || channel.length() < 2) {
+                send("ERROR Channel names must start with #");
+                return;
+            }
+
+            Room room = room(channel);
+            room.names.add(nickname);
+            room.clients.add(this);
+            broadcast(room, ":" + nickname + " JOIN " + channel);
+        }
+
+        /**
+         * Leave a channel, telling everyone in it (including the client)
+         * @param channel the channel's name
+         * @throws IOException if replying fails
+         */
+        private void part(String channel) throws IOException {
+            Room room = rooms.get(channel);
+            if (room == null || !room.clients.contains(this)) {
+                send("ERROR You are not in channel " + channel);
+                return;
+            }
+
+            broadcast(room, ":" + nickname + " PART " + channel);
+            room.clients.remove(this);
+            room.names.remove(nickname);
+        }
+
+        /**
+         * Reply with everyone in a channel
+         * The client expects a terminating token after the last nickname
+         * @param channel the channel's name
+         * @throws IOException if replying fails
+         */
+        private void names(String channel) throws IOException {
+            Room room = rooms.get(channel);
+
+            StringBuilder reply = new StringBuilder("REPLY_NAMES ").append(channel).append(" :");
+            if (room != null) {
+                for (String name : room.names) {
+                    reply.append(name).append(' ');
+                }
+            }
+            reply.append("END");
+
+            send(reply.toString());
+        }
+
+        /**
+         * Agree to compress the connection, switching both directions straight after the reply
+         * @param method the compression the client asked for
+         * @throws IOException if replying fails
+         */
+        private synchronized void compress(String method) throws IOException {
+            if (!method.equals(DeflateCodec.NAME)) {
+                send("ERROR Unsupported compression " + method);
+                return;
+            }
+
+            send("REPLY_COMPRESS :" + DeflateCodec.NAME);
+
+            // Client sends nothing more until it has the reply, so nothing compressed has been read ahead yet
+            input = new InflaterInputStream(socket.getInputStream());
+            readPosition = readLimit = 0;
+            // Sync flush on every flush, so each line can be decoded as soon as it arrives
+            output = new DeflaterOutputStream(socket.getOutputStream(), new Deflater(), true);
+            writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Send a chat message to a channel's members (including the sender) or to a single user
+         * @param target channel or nickname
+         * @param content the message, with its leading colon
+         * @throws IOException if replying fails
+         */
+        private void privmsg(String target, String content) throws IOException {
+            String line = ":" + nickname + " PRIVMSG " + target + " " + content;
+
+            if (target.startsWith("#")) {
+                Room room = rooms.get(target);
+                if (room == null) {
+                    send("ERROR No such channel " + target);
+                    return;
+                }
+                broadcast(room, line);
+                return;
+            }
+
+            ClientHandler recipient = clients.get(target);
+            if (recipient == null) {
+                send("ERROR No such user " + target);
+                return;
+            }
+            recipient.send(line);
+        }
+
+        /**
+         * Send a line to this client
+         * @param line the line, without a terminator
+         * @throws IOException if writing fails
+         */
+        private synchronized void send(String line) throws IOException {
+            writer.write(line);
+            writer.write("\r\n");
+            writer.flush();
+            linesSent.incrementAndGet();
+        }
+
+        /**
+         * Remove the client from the server once it has gone, telling everyone who shared a channel with it
+         */
+        private void leave() {
+            if (nickname != null) {
+                clients.remove(nickname, this);
+
+                // Tell each other member once, however many channels they shared
+                Set<ClientHandler> neighbours = new HashSet<>();
+                for (Room room : rooms.values()) {
+                    if (room.clients.remove(this)) {
+                        room.names.remove(nickname);
+                        neighbours.addAll(room.clients);
+                    }
+                }
+                for (ClientHandler neighbour : neighbours) {
+                    try {
+                        neighbour.send(":" + nickname + " QUIT");
+                    } catch (IOException e) {
+                        // A neighbour that has gone away is removed by its own thread
+                    }
+                }
+            }
+
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Nothing more can be done with a socket that fails to close
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Arrays;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.net.NoRouteToHostException;
+import java.net.ConnectException;
+import java.net.BindException;
+import java.net.SocketException;
+import java.io.EOFException;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.regex.Pattern;
+import java.util.regex.Matcher;
+
+/**
+ * Target class represents a target for messages
+ * It can be a user or a channel
+ */
+public class Target {
+    // Name of target 
+    protected String name;
+    // Message history of target, in order of server time, with every message stored on disk
+    protected MessageHistory messages;
+    // Server model target exists in (i.e server that a user is connected t or server that a channel is on)
+    protected ServerModel model;
+
+    /**
+     * Constructor for Target
+     * @param model ServerModel that target exists in
+     * @param name Name of target
+     */
+    public Target(ServerModel model, String name) {
+            this.name = name;
+            this.model = model;
+            this.messages = new MessageHistory(model, model.getHost() + ":" + model.getPort(), model.getNickname(), name);
+
+            // Make the stored history searchable, as it was added in an earlier session
+            if (SearchIndex.isEnabled()) {
+                SearchIndex.shared().open(this, messages.storeKey(), messages.storedEnd());
+            }
+    }
+
+    /**
+     * Getter for message history kept in memory
+     * @return Read-only list of the newest messages in order of server time, unchanged by messages added later
+     */
+    public List<Message> getMessages() {
+        // History is kept in order as messages are added, so there is nothing to sort
+        return messages.view();
+    }
+
+    /**
+     * Get the messages kept in memory as a page, to read older pages from
+     * @return Newest messages in order of server time, and where older messages start on disk
+     */
+    public HistoryPage getLatestPage() {
+        return messages.latestPage();
+    }
+
+    /**
+     * Read messages older than a page back in from disk
+     * @param before Start of the page to read the messages before
+     * @param count Most messages to read
+     * @return Page of older messages, empty if there are none
+     */
+    public HistoryPage getOlderPage(long before, int count) {
+        return messages.olderPage(before, count);
+    }
+
+    /**
+     * Read messages let go from memory between two pages back in from disk
+     * @param from End of the older page
+     * @param to End of the newer page
+     * @return Messages stored in between, in the order they were stored
+     */
+    public List<Message> getStoredBetween(long from, long to) {
+        return messages.storedBetween(from, to);
+    }
+
+    /**
+     * Read a single message back in from disk (e.g a search hit)
+     * @param position Position of the message in the target's store
+     * @return The message, or null if messages aren't stored
+     */
+    public Message getStoredMessage(long position) {
+        return messages.storedMessage(position);
+    }
+
+    /**
+     * Read at most a number of messages stored on disk between two positions
+     * @param from Position to start from
+     * @param to Position to stop at
+     * @param count Most messages to read
+     * @param visitor Callback for each message and its position
+     * @return Position to carry on from, or the position to stop at if messages aren't stored
+     */
+    public long forEachStoredMessage(long from, long to, int count, MessageStore.RecordVisitor visitor) {
+        return messages.forEachStored(from, to, count, visitor);
+    }
+
+    /**
+     * Read messages from a time on back in from disk
+     * @param time Time to start from
+     * @param count Most messages to read
+     * @return Page of messages starting at the first that is not older than the time
+     */
+    public HistoryPage getPageFrom(LocalDateTime time, int count) {
+        return messages.pageFrom(time, count);
+    }
+
+    /**
+     * Get time of most recent message in target
+     * @return LocalDateTime of most recent message, or null if there are no messages
+     */
+    public LocalDateTime getServerTimeOfLastMessage() {
+        // Most recent message is always the last in the history
+        Message last = messages.last();
+        return last == null ? null : last.getServerTime();
+    }
+
+    /**
+     * Remove all messages from target's message history
+     */
+    public void clearMessages() {
+        messages.clear();
+
+        if (SearchIndex.isEnabled()) {
+            SearchIndex.shared().forget(this);
+        }
+    }
+
+    /**
+     * Close target's stored history once the target is no longer used (e.g left or disconnected from)
+     * Messages in memory are kept, but no more are stored or searchable
+     */
+    public void close() {
+        // Stop searching the store before it closes, so no hit is read back in from a closed store
+        if (SearchIndex.isEnabled()) {
+            SearchIndex.shared().close(this);
+        }
+
+        messages.close();
+    }
+
+    /**
+     * Send message to target
+     * @param target Name of target
+     * @param messageContent Content of message
+     */
+    public void sendMessage(String target, String messageContent) {
+        // Send message via server model     
+        model.sendMessage(target, messageContent);
+    }
+
+    /**
+     * Add message to target's message history
+     * @param message Message to add
+     */
+    public void addMessage(Message message) {
+            // Appended, or inserted into place if it is older than the most recent message
+            long position = messages.add(message);
+
+            // Make the message searchable, if it could be stored to read back in
+            if (position >= 0 && SearchIndex.isEnabled()) {
+                SearchIndex.shared().add(this, message, position);
+            }
+
+            // Time the model update of messages received from the server
+            PipelineLatency.shared().record(message, MessageStage.STORED);
+    }
+
+    /**
+     * Get name of target
+     * @return Name of target
+     */
+    public String getName() {
+            return name;
+    }
+
+    /**
+     * Get server model target exists in 
+     * @return ServerModel target exists in
+     */
+    public String getServer() {
+        return model.toString();
+    }
+
+    /**
+     * Check if target is a channel
+     * @return False
+     * @see Channel
+     */
+    public boolean isChannel() {
+    	return false;
+    }
+}
+
@@ -0,0 +1,74 @@
+/**
+ * Token bucket limiting how fast lines are sent to a server
+ * Tokens refill at a steady rate up to a burst size, and each line sent takes one
+ */
+public class TokenBucket {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    // Tokens added per second, or 0 for no limit
+    private double ratePerSecond;
+    // Most tokens the bucket holds (i.e largest burst sent at full speed)
+    private double burst;
+    // Tokens currently available
+    private double tokens;
+    // Time the tokens were last refilled
+    private long lastRefillNanos;
+
+    /**
+     * Constructor for a token bucket, which starts full
+     * @param ratePerSecond tokens added per second, or 0 for no limit
+     * @param burst most tokens the bucket holds
+     */
+    public TokenBucket(double ratePerSecond, int burst) {
+        this.ratePerSecond = ratePerSecond;
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Take a token if one is available
+     * @param nowNanos current System.nanoTime()
+     * @return true if a token was taken, false if the caller has to wait
+     */
+    public boolean tryTake(long nowNanos) {
+        if (ratePerSecond <= 0) {
+            return true;
+        }
+
+        refill(nowNanos);
+        if (tokens < 1) {
+            return false;
+        }
+
+        tokens--;
+        return true;
+    }
+
+    /**
+     * Get how long until a token will be available
+     * @param nowNanos current System.nanoTime()
+     * @return nanoseconds until the next token, 0 if one is available now
+     */
+    public long nanosUntilToken(long nowNanos) {
+        if (ratePerSecond <= 0) {
+            return 0;
+        }
+
+        refill(nowNanos);
+        if (tokens >= 1) {
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) * NANOS_PER_SECOND / ratePerSecond);
+    }
+
+    /**
+     * Add the tokens earned since the last refill
+     * @param nowNanos current System.nanoTime()
+     */
+    private void refill(long nowNanos) {
+        double earned = (nowNanos - lastRefillNanos) * ratePerSecond / NANOS_PER_SECOND;
+        tokens = Math.min(burst, tokens + earned);
+        lastRefillNanos = nowNanos;
+    }
+}
@@ -8,9 +8,16 @@ public class ChatClient {
    
     /**
      * Main method for the ChatClient application
-     * @param args command line arguments (no arguments should be passed)
+     * @param args command line arguments (optionally --execution-mode=platform or --execution-mode=virtual)
      */ 
     public static void main(String[] args) {
+        // Choose the kind of threads for background work before anything creates them
+        for (String arg : args) {
+            if (arg.startsWith("--execution-mode=")) {
+                ExecutionMode.select(ExecutionMode.parse(arg.substring("--execution-mode=".length())));
+            }
+        }
+
         // Create the main view, which contains the server, target, and message panels
         ClientView clientView = new ClientView(WIDTH, HEIGHT);  
 
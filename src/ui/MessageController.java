@@ -0,0 +1,308 @@
+import javax.swing.SwingUtilities;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Controller of the MessagePanel
+ * Handles sending and receiving messages from the active target
+ */
+public class MessageController implements ActiveTargetListener {
+    // MessagePanel being controlled by this controller 
+    private MessagePanel view;
+    
+    // The active target that the user is currently messaging
+    private Target activeTarget;
+    private String activeTargetName;
+
+    // Title of the message history when no target is selected
+    private String EMPTY_TARGET_TITLE = "Nothing"; 
+
+    // Number of older messages to read from disk each time the history is scrolled to the top
+    private static final int PAGE_SIZE = 200;
+
+    // Messages read back from disk as the user scrolled up, shown above the messages the target keeps in memory
+    // Only changed on the EDT
+    private List<Message> olderMessages = new ArrayList<>();
+    // Where on disk the oldest shown message starts, to read the page before it
+    private long olderStart;
+    // Where on disk the messages the target keeps in memory started when last shown
+    private long olderEnd;
+    // Flag to only read one page at a time
+    private boolean loadingOlder;
+
+    // Newest message shown in the message history, to append those after it rather than showing every message again
+    // Only changed on the EDT
+    private Message lastShown;
+    // Messages shown with the rest of the target's messages, which may still be on their way to showMessage
+    // Only changed on the EDT
+    private Set<Message> shownWithTarget = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    // Most search results to show
+    private static final int SEARCH_LIMIT = 100;
+    // Days to search back for each choice of period (after "Any time")
+    private static final int[] SEARCH_PERIOD_DAYS = { 1, 7, 30 };
+   
+    /**
+     * Constructor for the MessageController 
+     * @param view The MessagePanel being controlled by this controller
+     */
+    public MessageController(MessagePanel view) {
+        this.view = view;
+       
+        // Configure listeners  
+        setupListeners();
+
+        // Set the initial title of the message history
+        view.setHistoryName(EMPTY_TARGET_TITLE);
+    }
+
+    /**
+     * Sets up the listeners for the MessagePanel
+     */
+    public void setupListeners() {
+        // Listener for when client sends a message         
+        view.addSendButtonListener(e -> sendMessage());
+
+        // Listener for when client searches message history
+        view.addSearchListener(e -> search());
+
+        // Listener for when client scrolls to the top of the message history
+        view.addScrollToTopListener(() -> loadOlderMessages());
+    }
+
+    /**
+     * Sends a message to the active target
+     */
+    public void sendMessage() {
+        // Get the message from the input area
+        String message = view.getMessageInput();
+
+        // Send message to the active target
+        activeTarget.sendMessage(activeTargetName, message);
+
+        // Reset the input area
+        view.resetInputArea(); 
+    }
+
+    /**
+     * Searches message history for the words in the search field, and shows the newest matches
+     * The search runs off the EDT, and an empty search hides the results
+     */
+    public void search() {
+        String text = view.getSearchText();
+        if (text.isBlank()) {
+            view.showSearchResults(null);
+            return;
+        }
+
+        if (!SearchIndex.isEnabled()) {
+            view.showSearchResults("Search is turned off");
+            return;
+        }
+
+        // Only search the active target if asked to and there is one
+        Target target = view.getSearchScope() == 1 ? activeTarget : null;
+        if (view.getSearchScope() == 1 && target == null) {
+            view.showSearchResults("Select a target to search in");
+            return;
+        }
+
+        // Any time, or back from now by the chosen number of days
+        int period = view.getSearchPeriod();
+        LocalDateTime from = period == 0 ? null : LocalDateTime.now().minusDays(SEARCH_PERIOD_DAYS[period - 1]);
+
+        ClientExecutors.background().execute(() -> {
+            long start = System.nanoTime();
+            List<SearchHit> hits = SearchIndex.shared().search(text, target, from, null, SEARCH_LIMIT);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+
+            StringBuilder results = new StringBuilder();
+            results.append(hits.size() == SEARCH_LIMIT ? "Newest " : "").append(hits.size()).append(" results in ").append(millis).append("ms");
+            for (SearchHit hit : hits) {
+                results.append("\n").append(hit.toString());
+            }
+
+            SwingUtilities.invokeLater(() -> view.showSearchResults(results.toString()));
+        });
+    }
+
+    /**
+     * Sets the active target to the given target
+     * @param target The target to set as the active target
+     */
+    public void onSetActiveTarget(Target target) {
+        // Targets can be set active once joined, off the EDT, but the view and the fields below are only used on it
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(() -> onSetActiveTarget(target));
+            return;
+        }
+
+        // Remove previous target's message history
+        view.resetMessageHistory();
+         
+        // Set the new active target 
+        activeTarget = target;
+
+        // Forget messages read from disk for the previous target
+        olderMessages = new ArrayList<>();
+        olderStart = 0;
+        olderEnd = 0;
+        loadingOlder = false;
+        lastShown = null;
+        shownWithTarget.clear();
+
+        // If the target is null (e.g user connected to the server but hasn't selected a target yet)
+        if(target == null) {
+            // Reset the message history title 
+            view.setHistoryName(EMPTY_TARGET_TITLE);
+
+            activeTargetName = null;
+            return;
+        
+        }
+        
+        // Add the target's messages to the message history    
+        readdMessages();
+
+        // Set the title of the message history to the target's name
+        activeTargetName = activeTarget.getName();
+        view.setHistoryName(activeTargetName);
+    }
+
+    /**
+     * Adds the messages of the active target to the message history
+     * Shows the messages read from disk so far, then those the target keeps in memory
+     */
+    public void readdMessages() {
+        HistoryPage latest = activeTarget.getLatestPage();
+
+        if (olderMessages.isEmpty()) {
+            // Nothing read from disk yet, so the next page is the one just before the messages in memory
+            olderStart = latest.getStart();
+        } else {
+            // Keep messages that left memory since they were last shown, so there is no gap below those read from disk
+            olderMessages.addAll(activeTarget.getStoredBetween(olderEnd, latest.getEnd()));
+        }
+        olderEnd = latest.getEnd();
+
+        // Each message read from disk, then each message in active target's message history, shown all at once
+        // Messages format themselves once, so showing them again is mostly copying text
+        StringBuilder text = new StringBuilder();
+        for(Message message : olderMessages) {
+            text.append(message.toString()).append("\n");
+        }
+        for(Message message : latest.getMessages()) {
+            text.append(message.toString()).append("\n");
+        }
+        view.setMessages(text.toString());
+
+        // Any of these may have been added just before the snapshot, and be shown again when their turn comes
+        List<Message> shown = latest.getMessages();
+        shownWithTarget.clear();
+        shownWithTarget.addAll(shown);
+        lastShown = shown.isEmpty() ? null : shown.get(shown.size() - 1);
+    }
+
+    /**
+     * Reads the page of messages older than those shown from disk, and adds them above the message history
+     * The page is read off the EDT, and dropped if the active target changed in the meantime
+     */
+    public void loadOlderMessages() {
+        // Nothing older to read, or already reading it
+        if (activeTarget == null || loadingOlder || olderStart == 0) {
+            return;
+        }
+        loadingOlder = true;
+
+        Target target = activeTarget;
+        long before = olderStart;
+        ClientExecutors.background().execute(() -> {
+            HistoryPage page = target.getOlderPage(before, PAGE_SIZE);
+            SwingUtilities.invokeLater(() -> showOlderMessages(target, before, page));
+        });
+    }
+
+    /**
+     * Adds a page of older messages above the message history
+     * @param target The target the page was read for
+     * @param before Where on disk the page was read up to
+     * @param page The page of older messages
+     */
+    private void showOlderMessages(Target target, long before, HistoryPage page) {
+        // Active target changed while the page was read
+        if (target != activeTarget) {
+            return;
+        }
+        loadingOlder = false;
+
+        List<Message> messages = new ArrayList<>(page.getMessages());
+        if (olderMessages.isEmpty()) {
+            // Messages may have left memory while the page was read, and are no longer shown, so show them too
+            messages.addAll(activeTarget.getStoredBetween(before, olderEnd));
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        olderMessages.addAll(0, messages);
+        olderStart = page.getStart();
+
+        StringBuilder text = new StringBuilder();
+        for (Message message : messages) {
+            text.append(message.toString()).append("\n");
+        }
+        view.prependMessages(text.toString());
+    }
+
+    /**
+     * Shows a message received from the active target in the message history
+     * Usually the message is the newest, so it is appended; one older than a shown message is put into place by
+     * showing the target's messages again
+     * @param message The message to show
+     */
+    private void showMessage(Message message) {
+        // Active target changed since the message was received
+        if (activeTarget == null || !message.getTarget().equals(activeTargetName) || !message.getServer().equals(activeTarget.getServer())) {
+            return;
+        }
+
+        // Already shown, as it was added to the target before the target was shown
+        if (shownWithTarget.remove(message)) {
+            return;
+        }
+
+        if (lastShown != null && message.getServerMillis() < lastShown.getServerMillis()) {
+            readdMessages();
+            return;
+        }
+
+        view.addMessage(message.toString());
+        lastShown = message;
+    }
+
+    /**
+     * Listener for when a message is received from the active target
+     * @param message The message that was received
+     */
+    public void onMessageRecieved(Message message) {
+        // Swing components must only be changed on the EDT
+        SwingUtilities.invokeLater(() -> {
+            showMessage(message);
+
+            // Time the message being appended, and then painted, on the EDT
+            PipelineLatency latency = PipelineLatency.shared();
+            latency.record(message, MessageStage.APPENDED);
+            // A hidden panel is never painted, so there is nothing to wait for
+            if (view.isShowing()) {
+                view.afterNextPaint(() -> latency.record(message, MessageStage.PAINTED));
+            } else {
+                latency.finish(message);
+            }
+        });
+    }
+}
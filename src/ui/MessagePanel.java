@@ -0,0 +1,324 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionListener;
+import java.awt.event.AdjustmentEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class for the message panel
+ * Contains target's message history and a form to send new messages
+ */
+public class MessagePanel extends JPanel {
+    private int width;
+    private int height;
+
+    // Declare components for MessagePanel
+    private JPanel messageHistoryPanel;
+    private JPanel messageFormPanel;
+    private JTextArea messageHistoryArea;
+    private JScrollPane messageHistoryScrollPane;
+    private JTextArea messageInputArea;
+    private JButton sendButton;
+    private JButton leaveChannelButton;
+
+    // Components for searching message history
+    private JTextField searchField;
+    private JComboBox<String> searchScopeBox;
+    private JComboBox<String> searchPeriodBox;
+    private JButton searchButton;
+    private JTextArea searchResultsArea;
+    private JScrollPane searchResultsScrollPane;
+
+    // Choices of where to search, and how far back
+    public static final String[] SEARCH_SCOPES = { "All targets", "This target" };
+    public static final String[] SEARCH_PERIODS = { "Any time", "Past day", "Past week", "Past month" };
+
+    // TODO seperate out history and form panel creation into seperate functions
+    /**
+     * Constructor for MessagePanel
+     * @param width Width of the panel
+     * @param height Height of the panel
+     */
+    public MessagePanel(int width, int height) {
+        // Set the width and height of the panel
+        this.width = width;
+        this.height = height;
+        
+        // Set layout for the main panel (vertical stacking)
+        setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
+
+        // Create message history panel 
+        messageHistoryPanel = new JPanel();
+        messageHistoryPanel.setLayout(new BorderLayout());
+    
+        // TODO remove magic strings, and create setters for default titles accessable by controller
+        // Create border and title for the message history panel 
+        messageHistoryPanel.setBorder(BorderFactory.createTitledBorder("Message history"));
+        // Create a text area to display message history, which reports when it has been painted
+        messageHistoryArea = new JTextArea(20, 30) {
+            @Override
+            protected void paintComponent(Graphics g) {
+                super.paintComponent(g);
+                runAfterPaint();
+            }
+        };
+        // Make message history read-only 
+        messageHistoryArea.setEditable(false);
+        // Add a scroll pane to the message history text area
+        messageHistoryScrollPane = new JScrollPane(messageHistoryArea);
+
+        // Add message history to the message history panel
+        messageHistoryPanel.add(messageHistoryScrollPane, BorderLayout.CENTER);
+
+        // Create a status panel, holding the search form and its results
+        JPanel statusPanel = new JPanel();
+        statusPanel.setLayout(new BorderLayout());
+
+        // Search form: words to search for, where and how far back to search, and a button to search
+        JPanel searchForm = new JPanel();
+        searchForm.setLayout(new BoxLayout(searchForm, BoxLayout.X_AXIS));
+        searchField = new JTextField();
+        searchScopeBox = new JComboBox<>(SEARCH_SCOPES);
+        searchPeriodBox = new JComboBox<>(SEARCH_PERIODS);
+        searchButton = new JButton("Search");
+        searchForm.add(new JLabel("Search: "));
+        searchForm.add(searchField);
+        searchForm.add(searchScopeBox);
+        searchForm.add(searchPeriodBox);
+        searchForm.add(searchButton);
+        statusPanel.add(searchForm, BorderLayout.NORTH);
+
+        // Read-only area for search results, hidden until there are some
+        searchResultsArea = new JTextArea(6, 30);
+        searchResultsArea.setEditable(false);
+        searchResultsScrollPane = new JScrollPane(searchResultsArea);
+        searchResultsScrollPane.setVisible(false);
+        statusPanel.add(searchResultsScrollPane, BorderLayout.CENTER);
+
+        // Add the status panel below the message history
+        messageHistoryPanel.add(statusPanel, BorderLayout.SOUTH);
+        
+        // Create a form panel to send new messages 
+        messageFormPanel = new JPanel();
+        messageFormPanel.setLayout(new BorderLayout());
+        // Add a border and title to the message form panel 
+        messageFormPanel.setBorder(BorderFactory.createTitledBorder("Send new message"));
+        // Set up the input area for the message form panel
+        messageInputArea = new JTextArea(5, 30);
+        messageInputArea.setWrapStyleWord(true);
+        messageInputArea.setLineWrap(true);
+        // Add a scroll pane to the message input text area
+        JScrollPane messageInputScrollPane = new JScrollPane(messageInputArea);
+        // Add the message input area to the message form panel
+        messageFormPanel.add(messageInputScrollPane, BorderLayout.CENTER);
+        
+        // Create the Send button
+        sendButton = new JButton("Send");
+        messageFormPanel.add(sendButton, BorderLayout.SOUTH);
+
+        // Add the two panels to the main panel
+        add(messageHistoryPanel);
+        add(messageFormPanel);
+
+        // Set preferred size for the MessagePanel
+        setPreferredSize(new Dimension(width, height));
+    }
+
+    /**
+     * Adds listener to the send button 
+     * @param listener ActionListener to be added to the send button
+     */
+    public void addSendButtonListener(ActionListener listener) {
+        sendButton.addActionListener(listener);
+    }
+
+    /**
+     * Adds message to the message history area
+     * @param message Message to be added to the message history area
+     */
+    public void addMessage(String message) {
+        // Append the message to the message history area
+        messageHistoryArea.append(message + "\n");
+        
+        // Update entire messagePanel
+        // TODO refresh messageHistoryPanel only instead of entire panel
+        refresh();
+    }
+
+    /**
+     * Replaces every message in the message history area at once, cheaper than adding them one by one
+     * @param messages Messages to be shown, one per line, oldest first
+     */
+    public void setMessages(String messages) {
+        messageHistoryArea.setText(messages);
+
+        // Update entire messagePanel
+        refresh();
+    }
+
+    /**
+     * Adds listener to the search button and search field (i.e pressing enter)
+     * @param listener ActionListener to be added to the search button and field
+     */
+    public void addSearchListener(ActionListener listener) {
+        searchButton.addActionListener(listener);
+        searchField.addActionListener(listener);
+    }
+
+    /**
+     * Getter for the words to search for
+     * @return String of contents of the search field
+     */
+    public String getSearchText() {
+        return searchField.getText();
+    }
+
+    /**
+     * Getter for where to search
+     * @return Index into SEARCH_SCOPES of the selected scope
+     */
+    public int getSearchScope() {
+        return searchScopeBox.getSelectedIndex();
+    }
+
+    /**
+     * Getter for how far back to search
+     * @return Index into SEARCH_PERIODS of the selected period
+     */
+    public int getSearchPeriod() {
+        return searchPeriodBox.getSelectedIndex();
+    }
+
+    /**
+     * Shows search results below the message history, or hides them if there is nothing to show
+     * @param results Results to show, one per line, or null to hide the results
+     */
+    public void showSearchResults(String results) {
+        searchResultsScrollPane.setVisible(results != null);
+        searchResultsArea.setText(results == null ? "" : results);
+        // Show the first result
+        searchResultsArea.setCaretPosition(0);
+        refresh();
+    }
+
+    /**
+     * Adds listener for when the message history is scrolled to the top (e.g to load older messages)
+     * @param listener Runnable to be run on the EDT whenever the history is at the top after scrolling or resizing
+     */
+    public void addScrollToTopListener(Runnable listener) {
+        messageHistoryScrollPane.getVerticalScrollBar().addAdjustmentListener((AdjustmentEvent e) -> {
+            // Wait until the user lets go of the scroll bar
+            if (e.getValueIsAdjusting()) {
+                return;
+            }
+
+            JScrollBar scrollBar = messageHistoryScrollPane.getVerticalScrollBar();
+            if (scrollBar.getValue() == scrollBar.getMinimum()) {
+                listener.run();
+            }
+        });
+    }
+
+    /**
+     * Adds older messages above those in the message history area, keeping the same messages in view
+     * @param messages Messages to be added, one per line, oldest first
+     */
+    public void prependMessages(String messages) {
+        JScrollBar scrollBar = messageHistoryScrollPane.getVerticalScrollBar();
+        int oldValue = scrollBar.getValue();
+        int oldMaximum = scrollBar.getMaximum();
+
+        // Insert the messages at the top of the message history area
+        messageHistoryArea.insert(messages, 0);
+
+        // Lay out the scroll pane now so the scroll bar knows the new height, then scroll down by what was added
+        messageHistoryScrollPane.validate();
+        scrollBar.setValue(oldValue + scrollBar.getMaximum() - oldMaximum);
+    }
+
+    // Tasks waiting for the message history to next be painted, only used on the EDT
+    private List<Runnable> afterPaintTasks = new ArrayList<>();
+
+    /**
+     * Run a task once the message history has next been painted (e.g to time when a message became visible)
+     * Must be called on the EDT
+     * @param task Task to run after the next paint
+     */
+    public void afterNextPaint(Runnable task) {
+        afterPaintTasks.add(task);
+    }
+
+    /**
+     * Run every task waiting for the message history to be painted
+     */
+    private void runAfterPaint() {
+        if (afterPaintTasks.isEmpty()) {
+            return;
+        }
+
+        // Tasks may queue further tasks for the paint after this one
+        List<Runnable> tasks = afterPaintTasks;
+        afterPaintTasks = new ArrayList<>();
+        for (Runnable task : tasks) {
+            task.run();
+        }
+    }
+
+    /**
+     * Clears message input area (e.g after message is sent)
+     */ 
+    public void resetInputArea() {
+        messageInputArea.setText("");
+    }
+
+    /**
+     * Removes all messages from the message history area (e.g after change in active target)
+     */
+    public void resetMessageHistory() {
+        // Clear the message input area
+        resetInputArea(); 
+        // Clear the message history area
+        messageHistoryArea.setText(""); 
+        // Refresh entire messagePanel
+        refresh();
+    }
+
+    /**
+     * Updates entire messagePanel by combining all the refresh methods
+     */
+    public void refresh() {
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Getter for current message input in the message input area
+     * @return String of contents of message input area
+     */
+    public String getMessageInput() {
+        return messageInputArea.getText();
+    }
+
+    /**
+     * Setter for message history name
+     * @param targetName Name of the new target to set the message history name to
+     */
+    public void setHistoryName(String targetName) {
+        messageHistoryPanel.setBorder(BorderFactory.createTitledBorder("Message history for: " + targetName));
+    }
+
+    // TODO channel config is in targetPanel now, investigate removing
+    /**
+     * Makes channel config (e.g leave channel) visible if current target is a channel
+     * @param isTargetChannel Boolean to determine if current target is a channel
+     */
+    public void channelSetup(boolean isTargetChannel) {
+        if(isTargetChannel) {
+            leaveChannelButton.setVisible(true); 
+        } else {
+            leaveChannelButton.setVisible(false);
+        }
+    }
+}
+
@@ -76,7 +76,8 @@ public class ServerController implements ServerListener {
         ServerModel newServerModel = modelFromView();
 
         // Attempt to connect to server
-        newServerModel.connect().thenRun(() -> {
+        // Continue on the dispatcher rather than whichever thread completed the connection
+        newServerModel.connect().thenRunAsync(() -> {
             // Add server to controller 
             String serverString = newServerModel.toString();
             serverModels.put(serverString, newServerModel);
@@ -95,7 +96,7 @@ public class ServerController implements ServerListener {
 
             // Inform user that server was added successfully
             view.setConnectionResult("Server added successfully!");
-        });
+        }, ClientExecutors.dispatcher());
     }
 
     /**
@@ -127,7 +128,7 @@ public class ServerController implements ServerListener {
 		}	
 
         // Attempt disconnect from active server
-		activeServerModel.disconnect().thenRun(() -> {
+		activeServerModel.disconnect().thenRunAsync(() -> {
             // Remove server from view
 			view.removeServer(activeServerString);
 
@@ -137,7 +138,7 @@ public class ServerController implements ServerListener {
 
             // Unset active server
 			unsetActive();
-		});	
+		}, ClientExecutors.dispatcher());	
 	}
 
 
@@ -160,6 +161,9 @@ public class ServerController implements ServerListener {
         // Create server model
         ServerModel model = new ServerModel(host, portInt, nickname);
 
+        // Disconnect from the server when the client exits
+        model.disconnectOnExit();
+
         // Add controller as listener to new server model
         model.addServerListener(this);
 
@@ -236,6 +240,22 @@ public class ServerController implements ServerListener {
         view.setConnectionResult(errorMessage);
     }
 
+    /**
+     * Connection lifecycle changes from model
+     * @param model ServerModel whose connection changed
+     * @param state New state of the connection
+     */
+    public void onStateChanged(ServerModel model, ConnectionState state) {
+        // Inform user if a server they added has lost its connection
+        if (state == ConnectionState.CLOSED && serverModels.containsKey(model.toString())) {
+            view.setConnectionResult("Disconnected from " + model.toString());
+
+        // Connecting again after being added means the connection dropped and is being restored
+        } else if (state == ConnectionState.CONNECTING && serverModels.containsKey(model.toString())) {
+            view.setConnectionResult("Reconnecting to " + model.toString() + "...");
+        }
+    }
+
     // List of active server listeners
     private List<ActiveServerListener> activeListeners = new ArrayList<>();
 
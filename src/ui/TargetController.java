@@ -83,15 +83,50 @@ public class TargetController implements ActiveServerListener, TargetListener {
     private void addUsersInChannel() {
         // Get active channel
         Channel activeChannel = (Channel) activeTarget; 
-        // Get all users in the channel
-        List<String> userKeys = activeChannel.getUsers();    
+        // Get all users in the channel, in alphabetical order, along with the roster version they are from
+        RosterDiff allUsers = activeChannel.getRoster().changesSince(-1);
         // For each user 
-        for(String userKey: userKeys) {
-            // Add user to view
-            view.addToChannelUsers(userKey);
-            // Add listener to the user's button
-            view.addActiveTargetListener(userKey, e -> setActiveTarget(userKey));
+        for(String userKey: allUsers.getAdded()) {
+            addUserInChannel(userKey);
+        }
+        shownRosterVersion = allUsers.getToVersion();
+    }
+
+    /**
+     * Add a single user in the channel to view
+     * @param userKey Username of user to add
+     */
+    private void addUserInChannel(String userKey) {
+        // Add user to view
+        view.addToChannelUsers(userKey);
+        // Add listener to the user's button
+        view.addActiveTargetListener(userKey, e -> setActiveTarget(userKey));
+    }
+
+    // Version of the active channel's roster that the view shows
+    private long shownRosterVersion;
+
+    /**
+     * Bring the view up to date with users who joined or left the active channel since it was last updated
+     * @param channel Active channel
+     */
+    private void updateUsersInChannel(Channel channel) {
+        // Get only the users who came or went since the view was last updated
+        RosterDiff changes = channel.getRoster().changesSince(shownRosterVersion);
+
+        // View is too far behind to catch up, so redraw every user
+        if (changes.isReset()) {
+            refreshUsersInChannel();
+            return;
         }
+
+        for(String userKey: changes.getRemoved()) {
+            view.deleteFromChannelUsers(userKey);
+        }
+        for(String userKey: changes.getAdded()) {
+            addUserInChannel(userKey);
+        }
+        shownRosterVersion = changes.getToVersion();
     }
 
     /**
@@ -109,7 +144,7 @@ public class TargetController implements ActiveServerListener, TargetListener {
      */ 
     private void addChannels() {
         // Attempt to get all channels in server
-        activeModel.getOfferedChannels().thenAccept(channelKeys -> {
+        activeModel.getOfferedChannels().thenAcceptAsync(channelKeys -> {
             // Get all channel keys in server
             channelKeys = Arrays.stream(channelKeys)
                 .filter(e -> !e.isEmpty())
@@ -132,7 +167,7 @@ public class TargetController implements ActiveServerListener, TargetListener {
                 // Add listener to the channel's button
                 view.addActiveTargetListener(channelKey, e -> setActiveTarget(channelKey)); 
             }            
-        });
+        }, ClientExecutors.dispatcher());
     }
    
     /**
@@ -192,14 +227,14 @@ public class TargetController implements ActiveServerListener, TargetListener {
         // Get target with key
         Target target = activeModel.getTargets().get(targetKey);
         
-        // If target does not exist 
-        if(target == null) { 
+        // If target does not exist, or is a channel only known from its traffic (e.g messages after leaving it)
+        if(target == null || (target.isChannel() && !((Channel) target).isJoined())) { 
             // If non-existent target is a channel, attempt to join channel
             if (targetKey.startsWith("#")) {
-                activeModel.joinChannel(targetKey).thenAccept(channel -> {
+                activeModel.joinChannel(targetKey).thenAcceptAsync(channel -> {
                     // Set newly discovered channel as active
                     setActiveTarget(channel); 
-                });
+                }, ClientExecutors.dispatcher());
             // Else, client is DMing a new user
             } else {
                 // Create new target representing new user
@@ -238,6 +273,11 @@ public class TargetController implements ActiveServerListener, TargetListener {
         // Unset current active server 
         unsetActiveTarget();
 
+        // Stop listening to the previous server, or switching back to it would deliver each of its messages once more
+        if (this.activeModel != null) {
+            this.activeModel.removeTargetListener(this);
+        }
+
         // Set new active server
         this.activeModel = activeModel;
         this.activeModel.addTargetListener(this);
@@ -285,13 +325,13 @@ public class TargetController implements ActiveServerListener, TargetListener {
         
         String channelToLeave = activeTargetName;
         // Attempt to part channel
-        activeModel.partChannel(channelToLeave).thenRun(() -> { 
+        activeModel.partChannel(channelToLeave).thenRunAsync(() -> { 
             // Remove channel from view
             view.leaveChannel(channelToLeave);
 
             // Unset old active target
             unsetActiveTarget();    
-        });
+        }, ClientExecutors.dispatcher());
     }
     
     // List of all keys of users that have been messaged 
@@ -345,8 +385,8 @@ public class TargetController implements ActiveServerListener, TargetListener {
             return;
         }
 
-        // Add new user to view
-        view.addToChannelUsers(usernameWhoJoined);
+        // Add new user (and anyone else who came or went since) to view
+        updateUsersInChannel(channel);
     }
 
     /**
@@ -360,8 +400,8 @@ public class TargetController implements ActiveServerListener, TargetListener {
             return;
         } 
        
-        // Remove user from view 
-        view.deleteFromChannelUsers(usernameWhoQuit);
+        // Remove user (and anyone else who came or went since) from view 
+        updateUsersInChannel(channel);
     }
 
     /**
@@ -369,6 +409,9 @@ public class TargetController implements ActiveServerListener, TargetListener {
      * @param message Message recieved
      */
     public void onMessageRecieved(Message message) {
+        // Time the message reaching the UI, whether or not its target is showing
+        PipelineLatency.shared().record(message, MessageStage.DISPATCHED);
+
         // If message is not from active target, return
         if (!isMessageFromActive(message)) {
             return;